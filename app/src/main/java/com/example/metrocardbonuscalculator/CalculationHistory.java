@@ -0,0 +1,458 @@
+package com.example.metrocardbonuscalculator;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistent log of calculations.
+ * <p>
+ * Records are stored in a ring of fixed-size slots, so the file never grows
+ * past its capacity and the oldest records are overwritten first. The header
+ * keeps running totals per fare type, which are adjusted as records are
+ * added and overwritten, so statistics never require a scan of the file.
+ * The header is marked dirty before records are written and clean again once
+ * the totals are updated; if the app stops in between, the totals are
+ * rebuilt from the stored records the next time the file is opened.
+ * <p>
+ * All file access happens on a single background thread. Appending only
+ * queues the record; queued records are written in batches, each with one
+ * write call and one header update. After an I/O error the file is closed
+ * and reopened by the next write, so a temporary error such as a full disk
+ * does not stop the history for good.
+ */
+public class CalculationHistory implements Closeable {
+    /** The number of fare types for which statistics are kept. */
+    public static final int MAX_FARES = 8;
+
+    private static final int MAGIC = 0x4D43484C; // "MCHL"
+    private static final int VERSION = 2;
+    private static final int STATS_FIELDS = 4; // count, rides, payment, bonus
+    private static final int DIRTY_OFFSET = 16;
+    private static final int HEADER_SIZE = 28 + MAX_FARES * STATS_FIELDS * 8;
+    private static final int MAX_BATCH = 128;
+
+    private final File file;
+    private final int capacity;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ConcurrentLinkedQueue<CalculationRecord> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /* The fields below are only accessed by the background thread. */
+    private final long[] stats = new long[MAX_FARES * STATS_FIELDS];
+    private final CalculationRecord[] batch = new CalculationRecord[MAX_BATCH];
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final ByteBuffer dirty = ByteBuffer.allocate(4);
+    private final ByteBuffer buf = ByteBuffer.allocate(MAX_BATCH * CalculationRecord.SIZE);
+    private FileChannel channel;
+    private long total;
+    private IOException failure;
+    private volatile ErrorListener errorListener;
+
+    /**
+     * Constructs a calculation history backed by a file. The file is opened
+     * in the background, and is reset if it is unreadable or was created with
+     * a different capacity.
+     *
+     * @param file     the file holding the history
+     * @param capacity the maximum number of records kept
+     * @throws IllegalArgumentException if capacity is not positive
+     * @throws NullPointerException     if file is null
+     */
+    public CalculationHistory(File file, int capacity) {
+        if (file == null) {
+            throw new NullPointerException("File must not be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a record to be written. This method does not block.
+     *
+     * @param record the record to add
+     * @throws IllegalArgumentException if the fare index of the record is not
+     *                                  below {@link #MAX_FARES}
+     * @throws NullPointerException     if record is null
+     */
+    public void append(CalculationRecord record) {
+        if (record.getFareIndex() >= MAX_FARES) {
+            throw new IllegalArgumentException("Fare index must be below " + MAX_FARES);
+        }
+        pending.add(record);
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    try {
+                        drain();
+                    } catch (IOException e) {
+                        ErrorListener listener = errorListener;
+                        if (listener != null) {
+                            listener.onError(e);
+                        } else {
+                            failure = e; // Reported by the next flush or query.
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes all queued records to the file.
+     *
+     * @return a future which completes once the records are written, or fails
+     *         with an I/O error, which may be that of an earlier append if no
+     *         error listener is set
+     */
+    public Future<Void> flush() {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                drain();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sets the listener which receives the errors of writes started by
+     * {@link #append}. Without a listener, such an error is reported by the
+     * next flush or query instead.
+     *
+     * @param listener the listener, or null
+     */
+    public void setErrorListener(ErrorListener listener) {
+        errorListener = listener;
+    }
+
+    /**
+     * Returns the most recent records, newest first.
+     *
+     * @param n the maximum number of records to return
+     * @return a future holding the records
+     * @throws IllegalArgumentException if n is negative
+     */
+    public Future<List<CalculationRecord>> getRecent(final int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of records must not be negative");
+        }
+        return executor.submit(new Callable<List<CalculationRecord>>() {
+            @Override
+            public List<CalculationRecord> call() throws IOException {
+                drain();
+                int count = (int) Math.min(n, Math.min(total, capacity));
+                List<CalculationRecord> result = new ArrayList<>(count);
+                long index = total - 1;
+                while (result.size() < count) {
+                    /* Reads backwards in runs of contiguous slots. */
+                    int slot = (int) (index % capacity);
+                    int run = Math.min(Math.min(count - result.size(), slot + 1), MAX_BATCH);
+                    readSlots(slot - run + 1, run);
+                    for (int i = run - 1; i >= 0; --i) {
+                        buf.position(i * CalculationRecord.SIZE);
+                        result.add(CalculationRecord.read(buf));
+                    }
+                    index -= run;
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Returns statistics over the stored records of a fare type.
+     *
+     * @param fareIndex the index of the fare type
+     * @return a future holding the statistics
+     * @throws IllegalArgumentException if fareIndex is negative or not below
+     *                                  {@link #MAX_FARES}
+     */
+    public Future<FareStats> getStats(final int fareIndex) {
+        if (fareIndex < 0 || fareIndex >= MAX_FARES) {
+            throw new IllegalArgumentException("Fare index is out of range");
+        }
+        return executor.submit(new Callable<FareStats>() {
+            @Override
+            public FareStats call() throws IOException {
+                drain();
+                int i = fareIndex * STATS_FIELDS;
+                return new FareStats(stats[i], stats[i + 1], stats[i + 2], stats[i + 3]);
+            }
+        });
+    }
+
+    /**
+     * Writes all queued records and closes the file in the background. The
+     * history must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain();
+                } catch (IOException e) {
+                    // Nothing more can be done.
+                }
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    // Nothing more can be done.
+                }
+            }
+        });
+        executor.shutdown();
+    }
+
+    /** Writes all queued records. Must be called on the background thread. */
+    private void drain() throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+        try {
+            open();
+            if (pending.isEmpty()) {
+                return;
+            }
+            markDirty();
+            while (!pending.isEmpty()) {
+                /* A batch never wraps around so it can be written in one call. */
+                int room = (int) Math.min(MAX_BATCH, capacity - total % capacity);
+                int n = 0;
+                CalculationRecord record;
+                while (n < room && (record = pending.poll()) != null) {
+                    batch[n++] = record;
+                }
+                int slot = (int) (total % capacity);
+                if (total >= capacity) {
+                    readSlots(slot, n);
+                    for (int i = 0; i < n; ++i) {
+                        CalculationRecord old = CalculationRecord.read(buf);
+                        if (isCounted(old)) {
+                            addStats(old, -1);
+                        }
+                    }
+                }
+                buf.clear();
+                for (int i = 0; i < n; ++i) {
+                    batch[i].write(buf);
+                    addStats(batch[i], 1);
+                    batch[i] = null;
+                }
+                buf.flip();
+                writeFully(buf, slotPosition(slot));
+                total += n;
+            }
+            writeHeader();
+            channel.force(false);
+        } catch (IOException e) {
+            /* Starts over from the file next time; a dirty header is repaired on opening. */
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // The original error is the one reported.
+                }
+                channel = null;
+            }
+            throw e;
+        }
+    }
+
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        if (channel.size() >= HEADER_SIZE) {
+            header.clear();
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getInt() == capacity
+                    && header.getInt() == MAX_FARES) {
+                boolean wasDirty = header.getInt() != 0;
+                total = header.getLong();
+                for (int i = 0; i < stats.length; ++i) {
+                    stats[i] = header.getLong();
+                }
+                if (total >= 0 && channel.size() >= slotPosition((int) Math.min(total, capacity))) {
+                    if (wasDirty) {
+                        rebuildStats();
+                    }
+                    return;
+                }
+            }
+        }
+        /* The file is new or unusable, so it is started over. */
+        channel.truncate(0);
+        total = 0;
+        for (int i = 0; i < stats.length; ++i) {
+            stats[i] = 0;
+        }
+        writeHeader();
+    }
+
+    /**
+     * Recomputes the totals from the stored records after an interrupted
+     * write, which may have left records the totals do not account for.
+     */
+    private void rebuildStats() throws IOException {
+        for (int i = 0; i < stats.length; ++i) {
+            stats[i] = 0;
+        }
+        int stored = (int) Math.min(total, capacity);
+        for (int slot = 0; slot < stored; slot += MAX_BATCH) {
+            int n = Math.min(MAX_BATCH, stored - slot);
+            readSlots(slot, n);
+            for (int i = 0; i < n; ++i) {
+                CalculationRecord record = CalculationRecord.read(buf);
+                if (isCounted(record)) {
+                    addStats(record, 1);
+                }
+            }
+        }
+        writeHeader();
+        channel.force(false);
+    }
+
+    /** Sets the dirty flag and makes sure it reaches the disk before any record. */
+    private void markDirty() throws IOException {
+        dirty.clear();
+        dirty.putInt(1);
+        dirty.flip();
+        writeFully(dirty, DIRTY_OFFSET);
+        channel.force(false);
+    }
+
+    /** Writes the header with the dirty flag cleared. */
+    private void writeHeader() throws IOException {
+        header.clear();
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(capacity);
+        header.putInt(MAX_FARES);
+        header.putInt(0);
+        header.putLong(total);
+        for (long stat : stats) {
+            header.putLong(stat);
+        }
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    /** Returns whether a record is included in the totals; a torn write may leave garbage. */
+    private static boolean isCounted(CalculationRecord record) {
+        return record.getFareIndex() >= 0 && record.getFareIndex() < MAX_FARES;
+    }
+
+    private void addStats(CalculationRecord record, int sign) {
+        int i = record.getFareIndex() * STATS_FIELDS;
+        stats[i] += sign;
+        stats[i + 1] += sign * (long) record.getRides();
+        stats[i + 2] += sign * record.getPaymentCents();
+        stats[i + 3] += sign * record.getBonusCents();
+    }
+
+    /** Reads consecutive slots into the start of the buffer and flips it. */
+    private void readSlots(int slot, int n) throws IOException {
+        buf.clear();
+        buf.limit(n * CalculationRecord.SIZE);
+        readFully(buf, slotPosition(slot));
+        buf.flip();
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * CalculationRecord.SIZE;
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of history file");
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+
+    /**
+     * Receives errors which occur on the background thread.
+     */
+    public interface ErrorListener {
+        /**
+         * Called on the background thread when records could not be written.
+         *
+         * @param e the error
+         */
+        void onError(IOException e);
+    }
+
+    /**
+     * Totals over the stored records of a fare type.
+     */
+    public static final class FareStats {
+        private final long count;
+        private final long rides;
+        private final long payment;
+        private final long bonus;
+
+        private FareStats(long count, long rides, long payment, long bonus) {
+            this.count = count;
+            this.rides = rides;
+            this.payment = payment;
+            this.bonus = bonus;
+        }
+
+        /** Returns the number of records. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Returns the total number of rides requested. */
+        public long getRides() {
+            return rides;
+        }
+
+        /** Returns the total amount paid in USD. */
+        public BigDecimal getPayment() {
+            return BigDecimal.valueOf(payment, 2);
+        }
+
+        /** Returns the total bonus received in USD. */
+        public BigDecimal getBonus() {
+            return BigDecimal.valueOf(bonus, 2);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * A single calculation stored in the {@link CalculationHistory}. Amounts are
+ * kept in cents so that every record has the same size on disk.
+ */
+public final class CalculationRecord {
+    /** The size of an encoded record in bytes. */
+    static final int SIZE = 48;
+
+    private final long timestamp;
+    private final int fareIndex;
+    private final int rides;
+    private final long balance;
+    private final long payment;
+    private final long bonus;
+    private final long newBalance;
+
+    /**
+     * Constructs a calculation record.
+     *
+     * @param timestamp  the time of the calculation in milliseconds since the epoch
+     * @param fareIndex  the index of the fare type
+     * @param balance    the balance before the payment in USD
+     * @param rides      the number of rides requested
+     * @param payment    the payment amount in USD
+     * @param bonus      the bonus amount in USD
+     * @param newBalance the balance after the payment in USD
+     * @throws IllegalArgumentException if fareIndex or rides is negative, or if
+     *                                  a value is too large to be stored or
+     *                                  is not a multiple of 0.01
+     * @throws NullPointerException     if an argument is null
+     */
+    public CalculationRecord(long timestamp,
+                             int fareIndex,
+                             BigDecimal balance,
+                             BigInteger rides,
+                             BigDecimal payment,
+                             BigDecimal bonus,
+                             BigDecimal newBalance) {
+
+        if (fareIndex < 0) {
+            throw new IllegalArgumentException("Fare index must not be negative");
+        }
+        if (rides.signum() < 0 || rides.bitLength() > 31) {
+            throw new IllegalArgumentException("Number of rides is out of range");
+        }
+        this.timestamp = timestamp;
+        this.fareIndex = fareIndex;
+        this.rides = rides.intValue();
+        this.balance = toCents(balance);
+        this.payment = toCents(payment);
+        this.bonus = toCents(bonus);
+        this.newBalance = toCents(newBalance);
+    }
+
+    private CalculationRecord(ByteBuffer buf) {
+        timestamp = buf.getLong();
+        fareIndex = buf.getInt();
+        rides = buf.getInt();
+        balance = buf.getLong();
+        payment = buf.getLong();
+        bonus = buf.getLong();
+        newBalance = buf.getLong();
+    }
+
+    /** Reads a record from the current position of a buffer. */
+    static CalculationRecord read(ByteBuffer buf) {
+        return new CalculationRecord(buf);
+    }
+
+    /** Writes this record at the current position of a buffer. */
+    void write(ByteBuffer buf) {
+        buf.putLong(timestamp);
+        buf.putInt(fareIndex);
+        buf.putInt(rides);
+        buf.putLong(balance);
+        buf.putLong(payment);
+        buf.putLong(bonus);
+        buf.putLong(newBalance);
+    }
+
+    /** Returns the time of the calculation in milliseconds since the epoch. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Returns the index of the fare type. */
+    public int getFareIndex() {
+        return fareIndex;
+    }
+
+    /** Returns the number of rides requested. */
+    public int getRides() {
+        return rides;
+    }
+
+    /** Returns the balance before the payment in USD. */
+    public BigDecimal getBalance() {
+        return BigDecimal.valueOf(balance, 2);
+    }
+
+    /** Returns the payment amount in USD. */
+    public BigDecimal getPayment() {
+        return BigDecimal.valueOf(payment, 2);
+    }
+
+    /** Returns the bonus amount in USD. */
+    public BigDecimal getBonus() {
+        return BigDecimal.valueOf(bonus, 2);
+    }
+
+    /** Returns the balance after the payment in USD. */
+    public BigDecimal getNewBalance() {
+        return BigDecimal.valueOf(newBalance, 2);
+    }
+
+    long getPaymentCents() {
+        return payment;
+    }
+
+    long getBonusCents() {
+        return bonus;
+    }
+
+    private static long toCents(BigDecimal usd) {
+        try {
+            return usd.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount cannot be stored: " + usd.toPlainString());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A fare document downloaded by the {@link FareFeedClient}.
+ * <p>
+ * A full document holds every value. A delta document only holds the values
+ * which changed since its base version.
+ */
+public final class FareFeed {
+    /** The base version of a full document. */
+    public static final long NO_BASE = -1;
+
+    private final long version;
+    private final long base;
+    private final Map<String, BigDecimal> values;
+    private final String etag;
+    private final String lastModified;
+
+    FareFeed(long version, long base, Map<String, BigDecimal> values, String etag, String lastModified) {
+        this.version = version;
+        this.base = base;
+        this.values = Collections.unmodifiableMap(values);
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /** Returns the version of the document. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Returns the version a delta applies to, or {@link #NO_BASE}. */
+    public long getBase() {
+        return base;
+    }
+
+    /** Returns true if the document only holds changed values. */
+    public boolean isDelta() {
+        return base != NO_BASE;
+    }
+
+    /** Returns the values in the document by preference key. */
+    public Map<String, BigDecimal> getValues() {
+        return values;
+    }
+
+    /** Returns the ETag header of the response, or null. */
+    public String getEtag() {
+        return etag;
+    }
+
+    /** Returns the Last-Modified header of the response, or null. */
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.metrocardbonuscalculator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Downloads fare documents over HTTP.
+ * <p>
+ * A document is plain text with one {@code key=value} pair per line. Blank
+ * lines and lines starting with {@code #} are ignored. The {@code version}
+ * key is required. A delta document also has a {@code base} key holding the
+ * version it applies to. Every other key is a preference key with a decimal
+ * value, for example:
+ * <pre>
+ * version=7
+ * base=6
+ * regular=2.90
+ * bonusPct=5
+ * </pre>
+ * Requests are conditional on the ETag and Last-Modified headers of the
+ * previous response, and a client which already has a version asks for a
+ * delta by adding a {@code since} query parameter. Servers are free to
+ * answer with a full document instead.
+ */
+public class FareFeedClient {
+    /** The version of a client which has no document yet. */
+    public static final long NO_VERSION = -1;
+
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_BASE = "base";
+
+    private final int timeoutMillis;
+
+    /**
+     * Constructs a fare feed client.
+     *
+     * @param timeoutMillis the connect and read timeout in milliseconds
+     * @throws IllegalArgumentException if timeoutMillis is negative
+     */
+    public FareFeedClient(int timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Downloads the fare document unless it has not changed. This method
+     * blocks and must not be called on the UI thread.
+     *
+     * @param url          the URL of the document
+     * @param version      the version the client has, or {@link #NO_VERSION}
+     * @param etag         the ETag of the previous response, or null
+     * @param lastModified the Last-Modified header of the previous response,
+     *                     or null
+     * @return the document, which is a delta only if its base is version, or
+     *         null if the document has not changed
+     * @throws IOException if the request fails or the document is malformed
+     */
+    public FareFeed fetch(String url, long version, String etag, String lastModified) throws IOException {
+        if (version != NO_VERSION) {
+            String separator = url.indexOf('?') < 0 ? "?" : "&";
+            FareFeed feed = request(url + separator + "since=" + version, etag, lastModified);
+            if (feed == null || !feed.isDelta() || feed.getBase() == version) {
+                return feed;
+            }
+            /* The delta does not apply to our values, so the full document is needed. */
+        }
+        FareFeed feed = request(url, null, null);
+        if (feed != null && feed.isDelta()) {
+            throw new IOException("Expected a full fare document");
+        }
+        return feed;
+    }
+
+    private FareFeed request(String url, String etag, String lastModified) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(timeoutMillis);
+            conn.setReadTimeout(timeoutMillis);
+            conn.setUseCaches(false);
+            if (etag != null) {
+                conn.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                conn.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + code);
+            }
+            try (InputStream in = conn.getInputStream()) {
+                Reader reader = new InputStreamReader(in, Charset.forName("UTF-8"));
+                return parse(reader, conn.getHeaderField("ETag"), conn.getHeaderField("Last-Modified"));
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /** Parses a document one line at a time. */
+    static FareFeed parse(Reader reader, String etag, String lastModified) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        long version = NO_VERSION;
+        long base = FareFeed.NO_BASE;
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (eq <= 0) {
+                throw new IOException("Malformed fare document at line " + lineNumber);
+            }
+            String key = line.substring(0, eq).trim();
+            String value = line.substring(eq + 1).trim();
+            try {
+                if (KEY_VERSION.equals(key)) {
+                    version = Long.parseLong(value);
+                } else if (KEY_BASE.equals(key)) {
+                    base = Long.parseLong(value);
+                } else {
+                    values.put(key, new BigDecimal(value));
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed fare document at line " + lineNumber);
+            }
+        }
+        if (version < 0) {
+            throw new IOException("Fare document has no version");
+        }
+        return new FareFeed(version, base, values, etag, lastModified);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.metrocardbonuscalculator;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Updates the stored fare and bonus values from a fare feed.
+ */
+public class FareUpdater {
+    public static final String PREF_KEY_FEED_URL = "feedUrl";
+
+    static final String PREF_KEY_FEED_VERSION = "feedVersion";
+    static final String PREF_KEY_FEED_ETAG = "feedEtag";
+    static final String PREF_KEY_FEED_LAST_MODIFIED = "feedLastModified";
+
+    private static final String[] otherKeys = {
+            MainActivity.PREF_KEY_BONUS_PCT,
+            MainActivity.PREF_KEY_BONUS_MIN,
+            MainActivity.PREF_KEY_INCREMENT
+    };
+
+    private final SharedPreferences prefs;
+    private final FareFeedClient client;
+
+    /**
+     * Constructs a fare updater.
+     *
+     * @param prefs  the preferences holding the values
+     * @param client the client used to download the feed
+     */
+    public FareUpdater(SharedPreferences prefs, FareFeedClient client) {
+        this.prefs = prefs;
+        this.client = client;
+    }
+
+    /**
+     * Downloads the feed and stores its values. Either all values are stored
+     * or none are. This method blocks and must not be called on the UI
+     * thread.
+     *
+     * @return true if the values were updated, false if the feed is not
+     *         configured or has not changed
+     * @throws IOException if the feed URL does not use https, or if the feed
+     *                     cannot be downloaded, holds invalid values or is
+     *                     older than the stored values
+     */
+    public boolean update() throws IOException {
+        String url = prefs.getString(PREF_KEY_FEED_URL, "").trim();
+        if (url.isEmpty()) {
+            return false;
+        }
+        if (!isSecureUrl(url)) {
+            throw new IOException("Fare update URL must use https: " + url);
+        }
+        long version = prefs.getLong(PREF_KEY_FEED_VERSION, FareFeedClient.NO_VERSION);
+        String etag = prefs.getString(PREF_KEY_FEED_ETAG, null);
+        String lastModified = prefs.getString(PREF_KEY_FEED_LAST_MODIFIED, null);
+
+        FareFeed feed = client.fetch(url, version, etag, lastModified);
+        if (feed == null) {
+            return false;
+        }
+        /* A stale mirror or cache must not roll the values back. */
+        if (feed.getVersion() < version) {
+            throw new IOException("Feed version " + feed.getVersion() + " is older than " + version);
+        }
+
+        Map<String, BigDecimal> values = new HashMap<>();
+        for (String key : MainActivity.keys) {
+            putIfPresent(values, feed, key);
+        }
+        for (String key : otherKeys) {
+            putIfPresent(values, feed, key);
+        }
+        validate(values);
+
+        Editor editor = prefs.edit();
+        for (Map.Entry<String, BigDecimal> entry : values.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue().toPlainString());
+        }
+        editor.putLong(PREF_KEY_FEED_VERSION, feed.getVersion());
+        editor.putString(PREF_KEY_FEED_ETAG, feed.getEtag());
+        editor.putString(PREF_KEY_FEED_LAST_MODIFIED, feed.getLastModified());
+        if (!editor.commit()) {
+            throw new IOException("Could not store fare values");
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if a URL uses https. Android blocks plain http traffic by
+     * default, so other feed URLs are rejected up front.
+     */
+    static boolean isSecureUrl(String url) {
+        return url.trim().regionMatches(true, 0, "https://", 0, 8);
+    }
+
+    private static void putIfPresent(Map<String, BigDecimal> values, FareFeed feed, String key) {
+        BigDecimal value = feed.getValues().get(key);
+        if (value != null) {
+            values.put(key, value);
+        }
+    }
+
+    /** Checks the values against the rules used by the settings screen and the calculator. */
+    private static void validate(Map<String, BigDecimal> values) throws IOException {
+        for (Map.Entry<String, BigDecimal> entry : values.entrySet()) {
+            BigDecimal value = entry.getValue();
+            if (value.signum() < 0 || value.stripTrailingZeros().scale() > 2) {
+                throw new IOException("Invalid value for " + entry.getKey());
+            }
+        }
+        BigDecimal increment = values.get(MainActivity.PREF_KEY_INCREMENT);
+        if (increment != null && increment.signum() == 0) {
+            throw new IOException("Invalid value for " + MainActivity.PREF_KEY_INCREMENT);
+        }
+    }
+}
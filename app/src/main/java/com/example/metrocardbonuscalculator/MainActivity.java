@@ -1,6 +1,7 @@
 package com.example.metrocardbonuscalculator;
 
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
@@ -8,6 +9,7 @@ import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.text.InputFilter;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -18,6 +20,8 @@ import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.DecimalFormat;
@@ -29,7 +33,19 @@ public class MainActivity extends AppCompatActivity {
     public static final String PREF_KEY_BONUS_MIN = "bonusMin";
     public static final String PREF_KEY_INCREMENT = "increment";
 
-    private static final String[] keys = {
+    private static final String TAG = "MainActivity";
+    private static final String HISTORY_FILE_NAME = "history.bin";
+    private static final int HISTORY_CAPACITY = 1000;
+
+    /* Shared by every instance so that only one thread ever accesses the file. */
+    private static CalculationHistory history;
+
+    /*
+     * The preference keys of the fares. The calculation history stores the
+     * index of a fare in this array, so keys must only be added at the end,
+     * and there may be at most CalculationHistory.MAX_FARES of them.
+     */
+    static final String[] keys = {
             "regular",
             "reduced",
             "expressBus",
@@ -182,7 +198,9 @@ public class MainActivity extends AppCompatActivity {
 
         MetroCardCalculator calc = new MetroCardCalculator(bonusMin, bonusPct, increment);
 
-        BigDecimal fare = fares[fareSpinner.getSelectedItemPosition()];
+        /* The spinner lists the fares in the order of keys. */
+        int fareIndex = fareSpinner.getSelectedItemPosition();
+        BigDecimal fare = fares[fareIndex];
         BigDecimal payment = calc.calculatePayment(fare, balance, rides);
         BigDecimal bonus = calc.calculateBonus(payment);
         BigDecimal newBalance = balance.add(payment).add(bonus);
@@ -190,6 +208,17 @@ public class MainActivity extends AppCompatActivity {
         BigInteger ridesOnCard = div[0].toBigInteger();
         BigDecimal remainder = div[1];
 
+        try {
+            getHistory(this).append(new CalculationRecord(System.currentTimeMillis(),
+                    fareIndex,
+                    balance,
+                    rides,
+                    payment,
+                    bonus,
+                    newBalance));
+        } catch (IllegalArgumentException e) { // Values too large to be stored.
+        }
+
         String msg = formatResult(ridesOnCard, payment, newBalance, remainder, bonus);
 
         new AlertDialog.Builder(this)
@@ -231,6 +260,25 @@ public class MainActivity extends AppCompatActivity {
         return builder.toString();
     }
 
+    /**
+     * Returns the calculation history of the app. The history lives as long
+     * as the process and is never closed, since every batch of records is
+     * forced to disk as soon as it is written.
+     */
+    static synchronized CalculationHistory getHistory(Context context) {
+        if (history == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), HISTORY_FILE_NAME);
+            history = new CalculationHistory(file, HISTORY_CAPACITY);
+            history.setErrorListener(new CalculationHistory.ErrorListener() {
+                @Override
+                public void onError(IOException e) {
+                    Log.w(TAG, "Could not write calculation history", e);
+                }
+            });
+        }
+        return history;
+    }
+
     private void onUpdate() {
         SettingsActivity.restoreDefaultSettings(this);
     }
@@ -6,6 +6,7 @@ import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.EditTextPreference;
 import android.preference.Preference;
@@ -16,6 +17,7 @@ import android.text.InputFilter;
 import android.view.MenuItem;
 import android.widget.Toast;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
 
@@ -24,6 +26,9 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
     public static final String ACTION_OTHER_VALUES = "com.example.metrocardbonuscalculator.ACTION_OTHER_VALUES";
 
     public static final String PREF_KEY_RESTORE_SETTINGS = "restoreSettings";
+    public static final String PREF_KEY_CHECK_FARE_UPDATES = "checkFareUpdates";
+
+    private static final int FEED_TIMEOUT_MILLIS = 15000;
 
     private SharedPreferences prefs;
     private OnSharedPreferenceChangeListener prefListener;
@@ -76,6 +81,28 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
                     return true;
                 }
             });
+            Preference checkUpdates = findPreference(PREF_KEY_CHECK_FARE_UPDATES);
+            checkUpdates.setOnPreferenceClickListener(new OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    checkFareUpdates();
+                    return true;
+                }
+            });
+            EditTextPreference feedUrl = (EditTextPreference) findPreference(FareUpdater.PREF_KEY_FEED_URL);
+            feedUrl.setOnPreferenceChangeListener(new OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+                    String url = newValue.toString().trim();
+                    if (!url.isEmpty() && !FareUpdater.isSecureUrl(url)) {
+                        String msg = getString(R.string.message_feed_url_https);
+                        Toast.makeText(SettingsActivity.this, msg, Toast.LENGTH_LONG).show();
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            syncSummary(feedUrl);
             main = true;
         }
 
@@ -133,7 +160,14 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
     }
 
     private void syncSummary(EditTextPreference etp) {
-        if (MainActivity.PREF_KEY_BONUS_PCT.equals(etp.getKey())) {
+        if (FareUpdater.PREF_KEY_FEED_URL.equals(etp.getKey())) {
+            String url = etp.getText();
+            if (url == null || url.trim().isEmpty()) {
+                etp.setSummary(R.string.pref_summary_feed_url);
+            } else {
+                etp.setSummary(url.trim());
+            }
+        } else if (MainActivity.PREF_KEY_BONUS_PCT.equals(etp.getKey())) {
             DecimalFormat df = new DecimalFormat("#.##");
             String s = df.format(new BigDecimal(etp.getText()));
             etp.setSummary(s + "%");
@@ -147,9 +181,59 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
         }
     }
 
+    private void checkFareUpdates() {
+        String url = prefs.getString(FareUpdater.PREF_KEY_FEED_URL, "");
+        if (url.trim().isEmpty()) {
+            String msg = getString(R.string.message_no_feed_url);
+            Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (!FareUpdater.isSecureUrl(url)) {
+            String msg = getString(R.string.message_feed_url_https);
+            Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (!AndroidUtilities.isInternetAvailable(this)) {
+            String msg = getString(R.string.message_no_internet);
+            Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
+            return;
+        }
+        FareUpdater updater = new FareUpdater(prefs, new FareFeedClient(FEED_TIMEOUT_MILLIS));
+        new FareUpdateTask(getApplicationContext(), updater).execute();
+    }
+
+    /** Runs a fare update in the background and reports the outcome. */
+    private static class FareUpdateTask extends AsyncTask<Void, Void, Integer> {
+        private final Context context;
+        private final FareUpdater updater;
+
+        FareUpdateTask(Context context, FareUpdater updater) {
+            this.context = context;
+            this.updater = updater;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            try {
+                return updater.update() ? R.string.fares_updated : R.string.fares_up_to_date;
+            } catch (IOException e) {
+                return R.string.message_update_failed;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer msgId) {
+            Toast.makeText(context, context.getString(msgId), Toast.LENGTH_LONG).show();
+        }
+    }
+
     public static void restoreDefaultSettings(Context c) {
-        Editor editor = PreferenceManager.getDefaultSharedPreferences(c).edit();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(c);
+        /* The feed URL is not a default value, so it survives the reset. */
+        String feedUrl = prefs.getString(FareUpdater.PREF_KEY_FEED_URL, null);
+        Editor editor = prefs.edit();
         editor.clear();
+        editor.putString(FareUpdater.PREF_KEY_FEED_URL, feedUrl);
         editor.commit();
         PreferenceManager.setDefaultValues(c, R.xml.preferences_fare_values, true);
         PreferenceManager.setDefaultValues(c, R.xml.preferences_other_values, true);
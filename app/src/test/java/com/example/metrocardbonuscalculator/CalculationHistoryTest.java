@@ -0,0 +1,131 @@
+package com.example.metrocardbonuscalculator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CalculationHistoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CalculationRecord record(long timestamp, int fareIndex, String payment) {
+        BigDecimal pay = new BigDecimal(payment);
+        return new CalculationRecord(timestamp, fareIndex, BigDecimal.ZERO, BigInteger.ONE,
+                pay, BigDecimal.ZERO, pay);
+    }
+
+    @Test
+    public void recent_isNewestFirstAfterWrapping() throws Exception {
+        CalculationHistory history = new CalculationHistory(folder.newFile(), 3);
+        for (int i = 1; i <= 5; ++i) {
+            history.append(record(i, 0, "1.00"));
+        }
+        List<CalculationRecord> recent = history.getRecent(10).get();
+        assertEquals(3, recent.size());
+        assertEquals(5, recent.get(0).getTimestamp());
+        assertEquals(4, recent.get(1).getTimestamp());
+        assertEquals(3, recent.get(2).getTimestamp());
+        history.close();
+    }
+
+    @Test
+    public void stats_onlyCoverStoredRecords() throws Exception {
+        CalculationHistory history = new CalculationHistory(folder.newFile(), 2);
+        history.append(record(1, 0, "10.00"));
+        history.append(record(2, 1, "3.00"));
+        history.append(record(3, 0, "2.75"));
+
+        CalculationHistory.FareStats regular = history.getStats(0).get();
+        assertEquals(1, regular.getCount());
+        assertEquals(0, regular.getPayment().compareTo(new BigDecimal("2.75")));
+        assertEquals(1, history.getStats(1).get().getCount());
+        history.close();
+    }
+
+    @Test
+    public void records_persistAcrossReopen() throws Exception {
+        File file = folder.newFile();
+        CalculationHistory history = new CalculationHistory(file, 4);
+        history.append(record(1, 2, "5.50"));
+        history.append(record(2, 2, "6.00"));
+        history.flush().get();
+        history.close();
+
+        CalculationHistory reopened = new CalculationHistory(file, 4);
+        List<CalculationRecord> recent = reopened.getRecent(1).get();
+        assertEquals(1, recent.size());
+        assertEquals(0, recent.get(0).getPayment().compareTo(new BigDecimal("6.00")));
+        assertEquals(2, reopened.getStats(2).get().getCount());
+        reopened.close();
+    }
+
+    @Test
+    public void stats_areRebuiltAfterInterruptedWrite() throws Exception {
+        File file = folder.newFile();
+        CalculationHistory history = new CalculationHistory(file, 2);
+        history.append(record(1, 0, "9.00"));
+        history.append(record(2, 0, "1.25"));
+        history.append(record(3, 0, "0.75"));
+        history.flush().get();
+        history.close();
+
+        /* Leaves the header as a crash between the record and header writes would. */
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(16);
+        raf.writeInt(1);
+        raf.seek(28);
+        raf.writeLong(5);
+        raf.writeLong(5);
+        raf.writeLong(1100);
+        raf.close();
+
+        CalculationHistory reopened = new CalculationHistory(file, 2);
+        CalculationHistory.FareStats regular = reopened.getStats(0).get();
+        assertEquals(2, regular.getCount());
+        assertEquals(2, regular.getRides());
+        assertEquals(0, regular.getPayment().compareTo(new BigDecimal("2.00")));
+        reopened.append(record(4, 0, "3.00"));
+        assertEquals(0, reopened.getStats(0).get().getPayment().compareTo(new BigDecimal("3.75")));
+        reopened.close();
+    }
+
+    @Test
+    public void history_recoversAfterError() throws Exception {
+        File file = folder.newFolder("history"); // Cannot be opened as a file.
+        CalculationHistory history = new CalculationHistory(file, 3);
+        final AtomicInteger errors = new AtomicInteger();
+        history.setErrorListener(new CalculationHistory.ErrorListener() {
+            @Override
+            public void onError(IOException e) {
+                errors.incrementAndGet();
+            }
+        });
+        history.append(record(1, 0, "2.75"));
+        try {
+            history.flush().get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, errors.get());
+
+        assertTrue(file.delete());
+        history.flush().get();
+        List<CalculationRecord> recent = history.getRecent(10).get();
+        assertEquals(1, recent.size());
+        assertEquals(1, recent.get(0).getTimestamp());
+        assertEquals(1, history.getStats(0).get().getCount());
+        history.close();
+    }
+}
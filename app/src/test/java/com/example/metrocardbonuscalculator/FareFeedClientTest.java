@@ -0,0 +1,104 @@
+package com.example.metrocardbonuscalculator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the fare feed client against a local stand-in server.
+ */
+public class FareFeedClientTest {
+    private static final String FULL = "version=2\nregular=2.90\nbonusPct=5\n";
+    private static final String DELTA = "version=2\nbase=1\nregular=2.90\n";
+    private static final String ETAG = "\"v2\"";
+
+    private HttpServer server;
+    private String url;
+    private String lastQuery;
+    private int requests;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fares", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ++requests;
+                lastQuery = exchange.getRequestURI().getQuery();
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                String body = lastQuery == null ? FULL : DELTA;
+                byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/fares";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetch_withoutVersion_returnsFullDocument() throws IOException {
+        FareFeed feed = new FareFeedClient(5000).fetch(url, FareFeedClient.NO_VERSION, null, null);
+        assertFalse(feed.isDelta());
+        assertEquals(2, feed.getVersion());
+        assertEquals(ETAG, feed.getEtag());
+        assertEquals(new BigDecimal("2.90"), feed.getValues().get("regular"));
+        assertNull(lastQuery);
+    }
+
+    @Test
+    public void fetch_withMatchingEtag_returnsNull() throws IOException {
+        assertNull(new FareFeedClient(5000).fetch(url, 2, ETAG, null));
+    }
+
+    @Test
+    public void fetch_withVersion_returnsDelta() throws IOException {
+        FareFeed feed = new FareFeedClient(5000).fetch(url, 1, null, null);
+        assertTrue(feed.isDelta());
+        assertEquals(1, feed.getValues().size());
+        assertEquals(1, requests);
+    }
+
+    @Test
+    public void fetch_withStaleVersion_fetchesFullDocument() throws IOException {
+        FareFeed feed = new FareFeedClient(5000).fetch(url, 0, null, null);
+        assertFalse(feed.isDelta());
+        assertEquals(2, requests);
+        assertNull(lastQuery);
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_malformedLine_throws() throws IOException {
+        FareFeedClient.parse(new StringReader("version=1\nregular\n"), null, null);
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_missingVersion_throws() throws IOException {
+        FareFeedClient.parse(new StringReader("regular=2.75\n"), null, null);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.metrocardbonuscalculator;
+
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FareUpdaterTest {
+    private static final String URL = "https://example.com/fares";
+
+    private FakePreferences prefs;
+    private FakeClient client;
+    private FareUpdater updater;
+
+    private static Map<String, BigDecimal> values(String... pairs) {
+        Map<String, BigDecimal> values = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            values.put(pairs[i], new BigDecimal(pairs[i + 1]));
+        }
+        return values;
+    }
+
+    @Before
+    public void setUp() {
+        prefs = new FakePreferences();
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_URL, URL);
+        prefs.values.put("regular", "2.75");
+        prefs.values.put("reduced", "1.35");
+        prefs.values.put(MainActivity.PREF_KEY_BONUS_PCT, "5");
+        client = new FakeClient();
+        updater = new FareUpdater(prefs, client);
+    }
+
+    @Test
+    public void update_storesFullFeedWithValidators() throws IOException {
+        client.feed = new FareFeed(3, FareFeed.NO_BASE,
+                values("regular", "2.90", "reduced", "1.45", MainActivity.PREF_KEY_BONUS_PCT, "0"),
+                "\"v3\"", "Mon, 05 Oct 2026 10:00:00 GMT");
+        assertTrue(updater.update());
+        assertEquals("2.90", prefs.values.get("regular"));
+        assertEquals("1.45", prefs.values.get("reduced"));
+        assertEquals("0", prefs.values.get(MainActivity.PREF_KEY_BONUS_PCT));
+        assertEquals(3L, prefs.values.get(FareUpdater.PREF_KEY_FEED_VERSION));
+        assertEquals("\"v3\"", prefs.values.get(FareUpdater.PREF_KEY_FEED_ETAG));
+        assertEquals("Mon, 05 Oct 2026 10:00:00 GMT", prefs.values.get(FareUpdater.PREF_KEY_FEED_LAST_MODIFIED));
+    }
+
+    @Test
+    public void update_deltaOnlyChangesListedKeys() throws IOException {
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_VERSION, 3L);
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_ETAG, "\"v3\"");
+        client.feed = new FareFeed(4, 3, values("regular", "3.00"), "\"v4\"", null);
+        assertTrue(updater.update());
+        assertEquals(3, client.version);
+        assertEquals("\"v3\"", client.etag);
+        assertEquals("3.00", prefs.values.get("regular"));
+        assertEquals("1.35", prefs.values.get("reduced"));
+        assertEquals("5", prefs.values.get(MainActivity.PREF_KEY_BONUS_PCT));
+        assertEquals(4L, prefs.values.get(FareUpdater.PREF_KEY_FEED_VERSION));
+    }
+
+    @Test
+    public void update_storesNothingForInvalidValue() throws IOException {
+        Map<String, Object> before = new HashMap<>(prefs.values);
+        client.feed = new FareFeed(5, FareFeed.NO_BASE,
+                values("regular", "2.90", MainActivity.PREF_KEY_INCREMENT, "0"), null, null);
+        try {
+            updater.update();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        client.feed = new FareFeed(5, FareFeed.NO_BASE, values("regular", "2.905"), null, null);
+        try {
+            updater.update();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(before, prefs.values);
+        assertEquals(0, prefs.commits);
+    }
+
+    @Test
+    public void update_rejectsOlderVersion() throws IOException {
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_VERSION, 7L);
+        Map<String, Object> before = new HashMap<>(prefs.values);
+        client.feed = new FareFeed(6, FareFeed.NO_BASE, values("regular", "2.50"), null, null);
+        try {
+            updater.update();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(before, prefs.values);
+    }
+
+    @Test
+    public void update_doesNothingWhenUnchangedOrUnconfigured() throws IOException {
+        assertFalse(updater.update());
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_URL, " ");
+        assertFalse(updater.update());
+        assertEquals(1, client.fetches);
+        assertEquals(0, prefs.commits);
+    }
+
+    @Test
+    public void update_rejectsPlainHttpUrl() {
+        prefs.values.put(FareUpdater.PREF_KEY_FEED_URL, "http://example.com/fares");
+        try {
+            updater.update();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals(0, client.fetches);
+        }
+        assertTrue(FareUpdater.isSecureUrl(" HTTPS://example.com/fares"));
+        assertFalse(FareUpdater.isSecureUrl("ftp://example.com/fares"));
+    }
+
+    /** Returns a canned feed and records the arguments of the last fetch. */
+    private static final class FakeClient extends FareFeedClient {
+        FareFeed feed;
+        long version;
+        String etag;
+        int fetches;
+
+        FakeClient() {
+            super(1000);
+        }
+
+        @Override
+        public FareFeed fetch(String url, long version, String etag, String lastModified) {
+            assertEquals(URL, url);
+            this.version = version;
+            this.etag = etag;
+            ++fetches;
+            return feed;
+        }
+    }
+
+    /** Keeps preferences in a map; an editor applies its changes on commit. */
+    private static final class FakePreferences implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+        int commits;
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new FakeEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private final class FakeEditor implements Editor {
+            private final Map<String, Object> changes = new HashMap<>();
+
+            private Editor put(String key, Object value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putString(String key, String value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                return put(key, values);
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor remove(String key) {
+                return put(key, null);
+            }
+
+            @Override
+            public Editor clear() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean commit() {
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    if (change.getValue() == null) {
+                        values.remove(change.getKey());
+                    } else {
+                        values.put(change.getKey(), change.getValue());
+                    }
+                }
+                ++commits;
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+
+/**
+ * An immutable schedule of bonus tiers. A payment earns the bonus percentage
+ * of the highest tier whose minimum it reaches, applied to the whole payment.
+ * Payments below the first tier earn no bonus.
+ * <p>
+ * The percentages must not decrease from one tier to the next so that a
+ * larger payment always results in a larger balance.
+ */
+public final class BonusSchedule {
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final BigDecimal[] mins;
+    private final BigDecimal[] pcts;
+    private final BigDecimal[] rates;
+    private final BigDecimal[] multipliers;
+    private final BigDecimal[] lowerValues;
+
+    /**
+     * Constructs a schedule with a single bonus tier.
+     *
+     * @param bonusMin the minimum payment amount in USD required for a bonus
+     * @param bonusPct the bonus percentage
+     * @throws IllegalArgumentException if an argument is negative
+     * @throws NullPointerException     if an argument is null
+     */
+    public BonusSchedule(BigDecimal bonusMin, BigDecimal bonusPct) {
+        this(new BigDecimal[]{bonusMin}, new BigDecimal[]{bonusPct});
+    }
+
+    /**
+     * Constructs a schedule with one or more bonus tiers.
+     *
+     * @param bonusMins the minimum payment amounts in USD of the tiers, in
+     *                  strictly increasing order
+     * @param bonusPcts the bonus percentages of the tiers, in non-decreasing
+     *                  order
+     * @throws IllegalArgumentException if the arrays are empty or differ in
+     *                                  length, if a value is negative or if
+     *                                  a value is out of order
+     * @throws NullPointerException     if an argument or element is null
+     */
+    public BonusSchedule(BigDecimal[] bonusMins, BigDecimal[] bonusPcts) {
+        if (bonusMins.length == 0 || bonusMins.length != bonusPcts.length) {
+            throw new IllegalArgumentException("Schedule must have one percentage per minimum");
+        }
+        int n = bonusMins.length + 1;
+        mins = new BigDecimal[n];
+        pcts = new BigDecimal[n];
+        rates = new BigDecimal[n];
+        multipliers = new BigDecimal[n];
+        lowerValues = new BigDecimal[n];
+
+        mins[0] = BigDecimal.ZERO;
+        pcts[0] = BigDecimal.ZERO;
+        rates[0] = BigDecimal.ZERO;
+        multipliers[0] = BigDecimal.ONE;
+        lowerValues[0] = BigDecimal.ZERO;
+        for (int i = 1; i < n; ++i) {
+            BigDecimal min = bonusMins[i - 1];
+            BigDecimal pct = bonusPcts[i - 1];
+            if (min.compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Bonus minimum must not be negative");
+            }
+            if (pct.compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Bonus percentage must not be negative");
+            }
+            if (i > 1 && min.compareTo(mins[i - 1]) <= 0) {
+                throw new IllegalArgumentException("Bonus minimums must be strictly increasing");
+            }
+            if (pct.compareTo(pcts[i - 1]) < 0) {
+                throw new IllegalArgumentException("Bonus percentages must not decrease");
+            }
+            mins[i] = min;
+            pcts[i] = pct;
+            rates[i] = pct.divide(HUNDRED);
+            multipliers[i] = rates[i].add(BigDecimal.ONE);
+            /* The amount a payment just below this tier adds to the balance. */
+            lowerValues[i] = min.multiply(multipliers[i - 1]);
+        }
+    }
+
+    /** Returns the number of bonus tiers. */
+    public int getTierCount() {
+        return mins.length - 1;
+    }
+
+    /**
+     * Returns the minimum payment amount in USD of a bonus tier.
+     *
+     * @param tier the index of the tier, starting from 0
+     * @throws IndexOutOfBoundsException if tier is out of range
+     */
+    public BigDecimal getBonusMin(int tier) {
+        return mins[checkTier(tier) + 1];
+    }
+
+    /**
+     * Returns the bonus percentage of a bonus tier.
+     *
+     * @param tier the index of the tier, starting from 0
+     * @throws IndexOutOfBoundsException if tier is out of range
+     */
+    public BigDecimal getBonusPct(int tier) {
+        return pcts[checkTier(tier) + 1];
+    }
+
+    private int checkTier(int tier) {
+        if (tier < 0 || tier >= getTierCount()) {
+            throw new IndexOutOfBoundsException("Tier " + tier + " of " + getTierCount());
+        }
+        return tier;
+    }
+
+    /*
+     * The methods below index tiers from 1, with 0 standing for payments
+     * which earn no bonus.
+     */
+
+    /** Returns the tier which applies to a payment. */
+    int tierForPayment(BigDecimal payment) {
+        return floorIndex(mins, payment);
+    }
+
+    /** Returns the tier of the smallest payment which adds at least value to the balance. */
+    int tierForValue(BigDecimal value) {
+        return floorIndex(lowerValues, value);
+    }
+
+    BigDecimal min(int tier) {
+        return mins[tier];
+    }
+
+    BigDecimal rate(int tier) {
+        return rates[tier];
+    }
+
+    BigDecimal multiplier(int tier) {
+        return multipliers[tier];
+    }
+
+    /** Returns the largest index whose element is not above key, or 0 if there is none. */
+    private static int floorIndex(BigDecimal[] a, BigDecimal key) {
+        int lo = 0;
+        int hi = a.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (a[mid].compareTo(key) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
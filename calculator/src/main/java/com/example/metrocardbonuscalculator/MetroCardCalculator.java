@@ -8,36 +8,55 @@ import java.math.RoundingMode;
  * Performs MetroCard bonus calculations.
  */
 public class MetroCardCalculator {
-    private BigDecimal bonusMin;
-    private BigDecimal bonusPct;
+    private BonusSchedule schedule;
     private BigDecimal increment;
 
     /**
-     * Constructs a MetroCard bonus calculator.
+     * Constructs a MetroCard bonus calculator with a single bonus tier.
      *
      * @param bonusMin  the minimum payment amount in USD required for a bonus
      * @param bonusPct  the bonus percentage
      * @param increment the payment increment in USD
      */
     public MetroCardCalculator(BigDecimal bonusMin, BigDecimal bonusPct, BigDecimal increment) {
+        this(new BonusSchedule(bonusMin, bonusPct), increment);
+    }
 
-        setBonusMin(bonusMin);
-        setBonusPct(bonusPct);
+    /**
+     * Constructs a MetroCard bonus calculator.
+     *
+     * @param schedule  the bonus schedule
+     * @param increment the payment increment in USD
+     */
+    public MetroCardCalculator(BonusSchedule schedule, BigDecimal increment) {
+        setBonusSchedule(schedule);
         setIncrement(increment);
     }
 
     /**
-     * Sets the minimum payment needed for a bonus to be applied.
+     * Sets the bonus schedule.
+     *
+     * @param schedule the bonus schedule
+     * @throws NullPointerException if schedule is null
+     */
+    public void setBonusSchedule(BonusSchedule schedule) {
+        if (schedule == null) {
+            throw new NullPointerException("Schedule must not be null");
+        }
+        this.schedule = schedule;
+    }
+
+    /**
+     * Sets the minimum payment needed for a bonus to be applied. The bonus
+     * schedule is replaced with a single tier which keeps the percentage of
+     * the first tier.
      *
      * @param bonusMin the payment amount in USD
      * @throws IllegalArgumentException if bonusMin is negative
      * @throws NullPointerException     if bonusMin is null
      */
     public void setBonusMin(BigDecimal bonusMin) {
-        if (bonusMin.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Bonus minimum must not be negative");
-        }
-        this.bonusMin = bonusMin;
+        schedule = new BonusSchedule(bonusMin, getBonusPct());
     }
 
     /**
@@ -59,24 +78,29 @@ public class MetroCardCalculator {
     }
 
     /**
-     * Sets the bonus percentage.
+     * Sets the bonus percentage. The bonus schedule is replaced with a single
+     * tier which keeps the minimum payment of the first tier.
      *
      * @param bonusPct the bonus percentage
      * @throws IllegalArgumentException if bonusPct is negative
      * @throws NullPointerException     if bonusPct is null
      */
     public void setBonusPct(BigDecimal bonusPct) {
-        if (bonusPct.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Bonus percentage must not be negative");
-        }
-        this.bonusPct = bonusPct;
+        schedule = new BonusSchedule(getBonusMin(), bonusPct);
+    }
+
+    /**
+     * Returns the bonus schedule.
+     */
+    public BonusSchedule getBonusSchedule() {
+        return schedule;
     }
 
     /**
-     * Returns the minimum payment needed for a bonus to applied.
+     * Returns the minimum payment of the first bonus tier.
      */
     public BigDecimal getBonusMin() {
-        return bonusMin;
+        return schedule.getBonusMin(0);
     }
 
     /**
@@ -87,10 +111,10 @@ public class MetroCardCalculator {
     }
 
     /**
-     * Returns the bonus percentage.
+     * Returns the bonus percentage of the first bonus tier.
      */
     public BigDecimal getBonusPct() {
-        return bonusPct;
+        return schedule.getBonusPct(0);
     }
 
     /**
@@ -122,11 +146,18 @@ public class MetroCardCalculator {
         if (result.compareTo(BigDecimal.ZERO) <= 0) {
             return BigDecimal.ZERO;
         }
-        if (result.compareTo(bonusMin) >= 0) {
-            BigDecimal bonusDecimal = bonusPct.divide(BigDecimal.valueOf(100));
-            result = result.divide(bonusDecimal.add(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
-            if (result.compareTo(bonusMin) <= 0) {
-                return bonusMin.max(increment);
+        /*
+         * The balance grows linearly with the payment within a tier, so the
+         * payment is found by inverting the tier which the smallest payment
+         * falls in. If that payment would be below the tier minimum, paying
+         * the minimum is cheaper than staying in the tier below.
+         */
+        int tier = schedule.tierForValue(result);
+        if (tier > 0) {
+            result = result.divide(schedule.multiplier(tier), 2, RoundingMode.HALF_UP);
+            BigDecimal tierMin = schedule.min(tier);
+            if (result.compareTo(tierMin) <= 0) {
+                return tierMin.max(increment);
             }
         }
         /* The result is adjusted to be divisible by the payment increment. */
@@ -149,9 +180,10 @@ public class MetroCardCalculator {
         if (payment.compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException("Payment must not be negative");
         }
-        if (payment.compareTo(bonusMin) < 0) {
+        int tier = schedule.tierForPayment(payment);
+        if (tier == 0) {
             return BigDecimal.ZERO;
         }
-        return bonusPct.divide(BigDecimal.valueOf(100)).multiply(payment).setScale(2, RoundingMode.HALF_UP);
+        return schedule.rate(tier).multiply(payment).setScale(2, RoundingMode.HALF_UP);
     }
 }
@@ -0,0 +1,78 @@
+package com.example.metrocardbonuscalculator;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class MetroCardCalculatorTest {
+    private static final BigDecimal INCREMENT = new BigDecimal("0.05");
+
+    private static BigDecimal usd(String s) {
+        return new BigDecimal(s);
+    }
+
+    private static BigDecimal payment(MetroCardCalculator calc, String fare, int rides) {
+        return calc.calculatePayment(usd(fare), BigDecimal.ZERO, BigInteger.valueOf(rides));
+    }
+
+    private static MetroCardCalculator tiered() {
+        BonusSchedule schedule = new BonusSchedule(
+                new BigDecimal[]{usd("5.50"), usd("40")},
+                new BigDecimal[]{usd("5"), usd("8")});
+        return new MetroCardCalculator(schedule, INCREMENT);
+    }
+
+    @Test
+    public void singleTier_matchesDefaults() {
+        MetroCardCalculator calc = new MetroCardCalculator(usd("5.50"), usd("5"), INCREMENT);
+        assertEquals(usd("2.75"), payment(calc, "2.75", 1));
+        assertEquals(usd("5.50"), payment(calc, "2.75", 2));
+        assertEquals(usd("26.20"), payment(calc, "2.75", 10));
+        assertEquals(usd("0.28"), calc.calculateBonus(usd("5.50")));
+        assertEquals(BigDecimal.ZERO, calc.calculateBonus(usd("5.45")));
+    }
+
+    @Test
+    public void singleTier_clampsToIncrement() {
+        MetroCardCalculator calc = new MetroCardCalculator(usd("0"), usd("5"), usd("1.00"));
+        assertEquals(usd("1.00"), payment(calc, "0.01", 1));
+    }
+
+    @Test
+    public void tiered_staysInLowerTierWhenCheaper() {
+        assertEquals(usd("39.05"), payment(tiered(), "4.10", 10));
+    }
+
+    @Test
+    public void tiered_paysTierMinimumInGap() {
+        assertEquals(usd("40"), payment(tiered(), "4.25", 10));
+    }
+
+    @Test
+    public void tiered_invertsUpperTier() {
+        MetroCardCalculator calc = tiered();
+        BigDecimal payment = payment(calc, "5.40", 10);
+        assertEquals(usd("50.00"), payment);
+        assertEquals(usd("4.00"), calc.calculateBonus(payment));
+    }
+
+    @Test
+    public void tiered_bonusUsesHighestReachedTier() {
+        MetroCardCalculator calc = tiered();
+        assertEquals(usd("1.95"), calc.calculateBonus(usd("39.05")));
+        assertEquals(usd("3.20"), calc.calculateBonus(usd("40")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void schedule_rejectsUnsortedMinimums() {
+        new BonusSchedule(new BigDecimal[]{usd("40"), usd("5.50")}, new BigDecimal[]{usd("5"), usd("8")});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void schedule_rejectsDecreasingPercentages() {
+        new BonusSchedule(new BigDecimal[]{usd("5.50"), usd("40")}, new BigDecimal[]{usd("8"), usd("5")});
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates a grid of single-tier bonus policies over a set of historical
+ * refill requests.
+ * <p>
+ * The requests are reduced to a {@link ShortfallHistogram} first, so each
+ * policy costs one pass over the distinct shortfalls rather than one per
+ * request. Payments and bonuses are computed with the same rules as
+ * {@link MetroCardCalculator}, but in integer cents: the division by the
+ * bonus multiplier is carried out as an exact fraction with the same
+ * half-up rounding, so the results match the calculator to the cent.
+ * Policies are evaluated in parallel.
+ */
+public class BonusPolicyEvaluator {
+    /** The largest bonus percentage supported. */
+    public static final BigDecimal MAX_BONUS_PCT = BigDecimal.valueOf(1000);
+
+    /** The largest number of decimal places supported in a bonus percentage. */
+    public static final int MAX_BONUS_PCT_SCALE = 4;
+
+    private final long[] shortfalls;
+    private final long[] counts;
+    private final long requests;
+
+    /**
+     * Constructs an evaluator over the requests of a histogram. Later changes
+     * to the histogram are not seen by the evaluator.
+     *
+     * @param histogram the requests
+     */
+    public BonusPolicyEvaluator(ShortfallHistogram histogram) {
+        long[][] arrays = histogram.toArrays();
+        shortfalls = arrays[0];
+        counts = arrays[1];
+        requests = histogram.getCount();
+    }
+
+    /** Returns the number of distinct positive shortfalls. */
+    public int getDistinctShortfalls() {
+        return shortfalls.length;
+    }
+
+    /**
+     * Evaluates every combination of the given values. The results are
+     * ordered by bonus percentage, then bonus minimum, then increment.
+     *
+     * @param bonusPcts  the bonus percentages
+     * @param bonusMins  the minimum payment amounts in USD required for a bonus
+     * @param increments the payment increments in USD
+     * @return the result of each policy
+     * @throws IllegalArgumentException if a value is not accepted by
+     *                                  {@link MetroCardCalculator}, if an
+     *                                  amount is not a multiple of 0.01 or is
+     *                                  above {@link ShortfallHistogram#MAX_SHORTFALL}
+     *                                  cents, or if a bonus percentage is above
+     *                                  {@link #MAX_BONUS_PCT} or has more than
+     *                                  {@link #MAX_BONUS_PCT_SCALE} decimals
+     * @throws ArithmeticException      if the total revenue or bonus of a
+     *                                  policy does not fit in a long
+     * @throws NullPointerException     if an argument or element is null
+     */
+    public Result[] evaluate(final BigDecimal[] bonusPcts,
+                             final BigDecimal[] bonusMins,
+                             final BigDecimal[] increments) {
+
+        /* Validates the whole grid before any work is done. */
+        for (BigDecimal bonusPct : bonusPcts) {
+            pctScale(bonusPct);
+        }
+        for (BigDecimal bonusMin : bonusMins) {
+            bonusMinCents(bonusMin);
+        }
+        for (BigDecimal increment : increments) {
+            incrementCents(increment);
+        }
+
+        final int mins = bonusMins.length;
+        final int incs = increments.length;
+        return IntStream.range(0, bonusPcts.length * mins * incs)
+                .parallel()
+                .mapToObj(i -> evaluate(bonusPcts[i / (mins * incs)],
+                        bonusMins[i / incs % mins],
+                        increments[i % incs]))
+                .toArray(Result[]::new);
+    }
+
+    /**
+     * Evaluates a single policy.
+     *
+     * @param bonusPct  the bonus percentage
+     * @param bonusMin  the minimum payment amount in USD required for a bonus
+     * @param increment the payment increment in USD
+     * @return the result of the policy
+     * @throws IllegalArgumentException if a value is out of range, as for
+     *                                  {@link #evaluate(BigDecimal[], BigDecimal[], BigDecimal[])}
+     * @throws ArithmeticException      if the total revenue or bonus does not
+     *                                  fit in a long
+     * @throws NullPointerException     if an argument is null
+     */
+    public Result evaluate(BigDecimal bonusPct, BigDecimal bonusMin, BigDecimal increment) {
+        /* The percentage is pct / 10^scale, so the multiplier is (denominator + pct) / denominator. */
+        int scale = pctScale(bonusPct);
+        long pct = bonusPct.movePointRight(scale).longValueExact();
+        long denominator = BigDecimal.valueOf(100).movePointRight(scale).longValueExact();
+        long min = bonusMinCents(bonusMin);
+        long inc = incrementCents(increment);
+
+        long revenue = 0;
+        long bonus = 0;
+        for (int i = 0; i < shortfalls.length; ++i) {
+            long payment = payment(shortfalls[i], pct, denominator, min, inc);
+            /* Totals over 100M requests of up to MAX_SHORTFALL cents can exceed a long. */
+            revenue = Math.addExact(revenue, Math.multiplyExact(counts[i], payment));
+            if (payment >= min) {
+                long each = divideHalfUp(payment * pct, denominator);
+                bonus = Math.addExact(bonus, Math.multiplyExact(counts[i], each));
+            }
+        }
+        return new Result(bonusPct, bonusMin, increment, requests, revenue, bonus);
+    }
+
+    /** Mirrors {@link MetroCardCalculator#calculatePayment} for a single tier, in cents. */
+    private static long payment(long shortfall, long pct, long denominator, long min, long inc) {
+        long result = shortfall;
+        if (result >= min) {
+            result = divideHalfUp(result * denominator, denominator + pct);
+            if (result <= min) {
+                return Math.max(min, inc);
+            }
+        }
+        long remainder = result % inc;
+        if (remainder != 0) {
+            result += inc - remainder;
+        }
+        return result;
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if (2 * (dividend - quotient * divisor) >= divisor) {
+            ++quotient;
+        }
+        return quotient;
+    }
+
+    private static int pctScale(BigDecimal bonusPct) {
+        if (bonusPct.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("Bonus percentage must not be negative");
+        }
+        if (bonusPct.compareTo(MAX_BONUS_PCT) > 0) {
+            throw new IllegalArgumentException("Bonus percentage must not be above " + MAX_BONUS_PCT);
+        }
+        int scale = Math.max(0, bonusPct.stripTrailingZeros().scale());
+        if (scale > MAX_BONUS_PCT_SCALE) {
+            throw new IllegalArgumentException("Bonus percentage has too many decimals");
+        }
+        return scale;
+    }
+
+    private static long bonusMinCents(BigDecimal bonusMin) {
+        if (bonusMin.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("Bonus minimum must not be negative");
+        }
+        return toCents(bonusMin);
+    }
+
+    private static long incrementCents(BigDecimal increment) {
+        if (increment.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Increment must be positive");
+        }
+        return toCents(increment);
+    }
+
+    private static long toCents(BigDecimal usd) {
+        long cents;
+        try {
+            cents = usd.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must be a multiple of 0.01: " + usd.toPlainString());
+        }
+        if (cents > ShortfallHistogram.MAX_SHORTFALL) {
+            throw new IllegalArgumentException("Amount is out of range: " + usd.toPlainString());
+        }
+        return cents;
+    }
+
+    /**
+     * The outcome of a bonus policy over all requests. Amounts are in USD.
+     */
+    public static final class Result {
+        private final BigDecimal bonusPct;
+        private final BigDecimal bonusMin;
+        private final BigDecimal increment;
+        private final long requests;
+        private final long revenue;
+        private final long bonus;
+
+        private Result(BigDecimal bonusPct,
+                       BigDecimal bonusMin,
+                       BigDecimal increment,
+                       long requests,
+                       long revenue,
+                       long bonus) {
+
+            this.bonusPct = bonusPct;
+            this.bonusMin = bonusMin;
+            this.increment = increment;
+            this.requests = requests;
+            this.revenue = revenue;
+            this.bonus = bonus;
+        }
+
+        /** Returns the bonus percentage of the policy. */
+        public BigDecimal getBonusPct() {
+            return bonusPct;
+        }
+
+        /** Returns the bonus minimum of the policy. */
+        public BigDecimal getBonusMin() {
+            return bonusMin;
+        }
+
+        /** Returns the payment increment of the policy. */
+        public BigDecimal getIncrement() {
+            return increment;
+        }
+
+        /** Returns the number of requests evaluated. */
+        public long getRequests() {
+            return requests;
+        }
+
+        /** Returns the total of all payments. */
+        public BigDecimal getRevenue() {
+            return BigDecimal.valueOf(revenue, 2);
+        }
+
+        /** Returns the total of all bonuses. */
+        public BigDecimal getBonus() {
+            return BigDecimal.valueOf(bonus, 2);
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.example.metrocardbonuscalculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Charges taps under a rolling fare cap: once a rider has paid for a given
+ * number of rides within the capping window, further taps are free until
+ * the oldest of those rides leaves the window. Paid rides of every fare type
+ * count towards the same cap.
+ * <p>
+ * Riders are spread over shards by a hash of their id, and the taps of each
+ * shard are processed by one thread, so each shard owns its state without
+ * locking. A shard maps rider ids to slots with an open-addressing table and
+ * keeps the times of the paid rides in the window in a ring of
+ * {@code capRides} ints per slot. Times are kept in seconds. Riders whose
+ * rides are all older than the window plus the maximum skew, as of the
+ * latest tap seen, are dropped when a shard fills up and on each checkpoint,
+ * so memory only grows with the number of active riders.
+ * <p>
+ * The taps of a rider must be passed in chronological order, and no tap may
+ * be earlier than the latest tap of another rider by more than the maximum
+ * skew; otherwise the earlier rides of its rider may have been dropped. An
+ * engine must not be used by more than one thread at a time.
+ */
+public class FareCapEngine {
+    /** The earliest tap time supported, 2020-01-01T00:00:00Z in milliseconds. */
+    public static final long MIN_TIME_MILLIS = 1577836800000L;
+
+    private static final int MAGIC = 0x4D434643; // "MCFC"
+    private static final int VERSION = 1;
+    private static final long MAX_SECONDS = Integer.MAX_VALUE;
+
+    private final int[] fareCents;
+    private final int capRides;
+    private final int windowSeconds;
+    private final int retainSeconds;
+    private final Shard[] shards;
+
+    /* Scratch space for partitioning batches by shard. */
+    private int[] order = new int[0];
+    private int[] tapShards = new int[0];
+    private int[] tapSeconds = new int[0];
+
+    /**
+     * Constructs a fare cap engine which allows taps of different riders to
+     * be out of order by up to the length of the window.
+     *
+     * @param fares         the cost of each fare type in USD
+     * @param capRides      the number of paid rides after which taps are free
+     * @param windowMillis  the length of the capping window in milliseconds
+     * @param shards        the number of shards, usually the number of cores
+     * @throws IllegalArgumentException if a fare is negative or not a
+     *                                  multiple of 0.01, or if capRides,
+     *                                  windowMillis or shards is not positive
+     * @throws NullPointerException     if fares or one of its elements is null
+     */
+    public FareCapEngine(BigDecimal[] fares, int capRides, long windowMillis, int shards) {
+        this(fares, capRides, windowMillis, windowMillis, shards);
+    }
+
+    /**
+     * Constructs a fare cap engine.
+     *
+     * @param fares         the cost of each fare type in USD
+     * @param capRides      the number of paid rides after which taps are free
+     * @param windowMillis  the length of the capping window in milliseconds
+     * @param maxSkewMillis how much earlier in milliseconds than the latest tap
+     *                      of another rider a tap may be
+     * @param shards        the number of shards, usually the number of cores
+     * @throws IllegalArgumentException if a fare is negative or not a
+     *                                  multiple of 0.01, if capRides,
+     *                                  windowMillis or shards is not positive,
+     *                                  or if maxSkewMillis is negative
+     * @throws NullPointerException     if fares or one of its elements is null
+     */
+    public FareCapEngine(BigDecimal[] fares, int capRides, long windowMillis, long maxSkewMillis, int shards) {
+        if (capRides <= 0 || capRides > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Cap must be between 1 and " + Short.MAX_VALUE + " rides");
+        }
+        if (windowMillis < 1000 || windowMillis / 1000 > MAX_SECONDS) {
+            throw new IllegalArgumentException("Window is out of range");
+        }
+        long skewSeconds = maxSkewMillis / 1000 + (maxSkewMillis % 1000 == 0 ? 0 : 1);
+        if (maxSkewMillis < 0 || windowMillis / 1000 + skewSeconds > MAX_SECONDS) {
+            throw new IllegalArgumentException("Skew is out of range");
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive");
+        }
+        this.fareCents = new int[fares.length];
+        for (int i = 0; i < fares.length; ++i) {
+            if (fares[i].compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Fare must not be negative");
+            }
+            try {
+                fareCents[i] = fares[i].movePointRight(2).intValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Fare must be a multiple of 0.01");
+            }
+        }
+        this.capRides = capRides;
+        this.windowSeconds = (int) (windowMillis / 1000);
+        this.retainSeconds = (int) (windowSeconds + skewSeconds);
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; ++i) {
+            this.shards[i] = new Shard(capRides, windowSeconds, retainSeconds);
+        }
+    }
+
+    /**
+     * Charges a single tap.
+     *
+     * @param rider      the rider id
+     * @param timeMillis the time of the tap in milliseconds since the epoch
+     * @param fareType   the index of the fare type
+     * @return the amount charged in cents, which is 0 if the tap is capped
+     * @throws IllegalArgumentException if the time or fare type is out of range
+     */
+    public int charge(long rider, long timeMillis, int fareType) {
+        int time = toSeconds(timeMillis);
+        int fare = fareCents(fareType);
+        long hash = hash(rider);
+        return shards[shardOf(hash)].charge(rider, hash, time, fare);
+    }
+
+    /**
+     * Charges a batch of taps, processing the shards in parallel.
+     *
+     * @param riders      the rider id of each tap
+     * @param timesMillis the time of each tap in milliseconds since the epoch
+     * @param fareTypes   the fare type of each tap
+     * @param length      the number of taps
+     * @param charges     receives the amount charged for each tap in cents
+     * @return the total amount charged in cents
+     * @throws IllegalArgumentException if an array is shorter than length, or
+     *                                  if a time or fare type is out of
+     *                                  range, in which case no tap is charged
+     */
+    public long process(final long[] riders,
+                        long[] timesMillis,
+                        final int[] fareTypes,
+                        int length,
+                        final int[] charges) {
+
+        if (length < 0 || riders.length < length || timesMillis.length < length
+                || fareTypes.length < length || charges.length < length) {
+            throw new IllegalArgumentException("Arrays must hold at least length taps");
+        }
+        if (order.length < length) {
+            order = new int[length];
+            tapShards = new int[length];
+            tapSeconds = new int[length];
+        }
+
+        /* Validates every tap and groups the taps by shard, keeping their order. */
+        final int[] start = new int[shards.length + 1];
+        for (int i = 0; i < length; ++i) {
+            tapSeconds[i] = toSeconds(timesMillis[i]);
+            fareCents(fareTypes[i]);
+            tapShards[i] = shardOf(hash(riders[i]));
+            ++start[tapShards[i] + 1];
+        }
+        for (int s = 0; s < shards.length; ++s) {
+            start[s + 1] += start[s];
+        }
+        int[] next = Arrays.copyOf(start, shards.length);
+        for (int i = 0; i < length; ++i) {
+            order[next[tapShards[i]]++] = i;
+        }
+
+        final int[] taps = order;
+        final int[] seconds = tapSeconds;
+        return IntStream.range(0, shards.length)
+                .parallel()
+                .mapToLong(s -> {
+                    Shard shard = shards[s];
+                    long total = 0;
+                    for (int j = start[s]; j < start[s + 1]; ++j) {
+                        int i = taps[j];
+                        int charge = shard.charge(riders[i], hash(riders[i]), seconds[i], fareCents[fareTypes[i]]);
+                        charges[i] = charge;
+                        total += charge;
+                    }
+                    return total;
+                })
+                .sum();
+    }
+
+    /**
+     * Returns the number of riders held in memory, which may include riders
+     * whose rides have expired since the last checkpoint.
+     */
+    public long getRiderCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.size;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the state of every rider with paid rides within the window plus
+     * the maximum skew to a file. The file is replaced only once the new state is fully written.
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the file cannot be written
+     */
+    public void checkpoint(File file) throws IOException {
+        int latest = Integer.MIN_VALUE;
+        for (Shard shard : shards) {
+            latest = Math.max(latest, shard.latest);
+        }
+        long expired = (long) latest - retainSeconds;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(capRides);
+            out.writeInt(windowSeconds);
+            for (Shard shard : shards) {
+                shard.write(out, expired);
+            }
+            out.writeLong(0);
+            out.writeShort(0); // End marker
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        for (Shard shard : shards) {
+            shard.compact(expired);
+        }
+    }
+
+    /**
+     * Replaces the state of the engine with a checkpoint. The checkpoint may
+     * have been written by an engine with a different number of shards. The
+     * state is only replaced once the whole checkpoint has been read.
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the file cannot be read, or if it was written
+     *                     with a different cap or window, in which case the
+     *                     state is left unchanged
+     */
+    public void restore(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a fare cap checkpoint: " + file);
+            }
+            if (in.readInt() != capRides || in.readInt() != windowSeconds) {
+                throw new IOException("Checkpoint was written with different cap settings");
+            }
+            Shard[] restored = new Shard[shards.length];
+            for (int i = 0; i < restored.length; ++i) {
+                restored[i] = new Shard(capRides, windowSeconds, retainSeconds);
+            }
+            int[] times = new int[capRides];
+            while (true) {
+                long rider = in.readLong();
+                int count = in.readShort();
+                if (count == 0) {
+                    break;
+                }
+                if (count < 0 || count > capRides) {
+                    throw new IOException("Corrupt fare cap checkpoint: " + file);
+                }
+                for (int i = 0; i < count; ++i) {
+                    times[i] = in.readInt();
+                }
+                long hash = hash(rider);
+                restored[shardOf(hash)].load(rider, hash, times, count);
+            }
+            System.arraycopy(restored, 0, shards, 0, shards.length);
+        }
+    }
+
+    private int toSeconds(long timeMillis) {
+        long seconds = (timeMillis - MIN_TIME_MILLIS) / 1000;
+        if (timeMillis < MIN_TIME_MILLIS || seconds > MAX_SECONDS) {
+            throw new IllegalArgumentException("Tap time is out of range: " + timeMillis);
+        }
+        return (int) seconds;
+    }
+
+    private int fareCents(int fareType) {
+        if (fareType < 0 || fareType >= fareCents.length) {
+            throw new IllegalArgumentException("Unknown fare type: " + fareType);
+        }
+        return fareCents[fareType];
+    }
+
+    private int shardOf(long hash) {
+        /* The high bits pick the shard, the low bits the table index. */
+        return (int) ((hash >>> 32) % shards.length);
+    }
+
+    private static long hash(long rider) {
+        long h = rider * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * The state of the riders of one shard.
+     */
+    private static final class Shard {
+        private static final int INITIAL_TABLE_SIZE = 1024;
+        private static final int MAX_SLOTS = 1 << 29;
+        private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+        private final int capRides;
+        private final int windowSeconds;
+        private final int retainSeconds;
+
+        /* Open-addressing table from rider id to slot + 1, where 0 marks a free entry. */
+        private long[] keys = new long[INITIAL_TABLE_SIZE];
+        private int[] slots = new int[INITIAL_TABLE_SIZE];
+        private int size;
+
+        /* Per slot: the first ride in the ring and the number of rides. */
+        private short[] heads = new short[INITIAL_TABLE_SIZE / 2];
+        private short[] counts = new short[INITIAL_TABLE_SIZE / 2];
+        private int[] times;
+        private int latest = Integer.MIN_VALUE;
+
+        Shard(int capRides, int windowSeconds, int retainSeconds) {
+            this.capRides = capRides;
+            this.windowSeconds = windowSeconds;
+            this.retainSeconds = retainSeconds;
+            this.times = new int[heads.length * capRides];
+        }
+
+        int charge(long rider, long hash, int time, int fare) {
+            if (time > latest) {
+                latest = time;
+            }
+            int slot = slot(rider, hash);
+            int base = slot * capRides;
+            int head = heads[slot];
+            int count = counts[slot];
+            /* Drops the rides which have left the window. */
+            while (count > 0 && times[base + head] <= time - windowSeconds) {
+                head = head + 1 == capRides ? 0 : head + 1;
+                --count;
+            }
+            int charge = 0;
+            if (count < capRides) {
+                int tail = head + count;
+                times[base + (tail >= capRides ? tail - capRides : tail)] = time;
+                ++count;
+                charge = fare;
+            }
+            heads[slot] = (short) head;
+            counts[slot] = (short) count;
+            return charge;
+        }
+
+        void load(long rider, long hash, int[] rideTimes, int count) {
+            int slot = slot(rider, hash);
+            System.arraycopy(rideTimes, 0, times, slot * capRides, count);
+            heads[slot] = 0;
+            counts[slot] = (short) count;
+            if (rideTimes[count - 1] > latest) {
+                latest = rideTimes[count - 1];
+            }
+        }
+
+        /** Writes the riders with rides after the expiry time, oldest ride first. */
+        void write(DataOutputStream out, long expired) throws IOException {
+            for (int i = 0; i < keys.length; ++i) {
+                if (slots[i] == 0) {
+                    continue;
+                }
+                int slot = slots[i] - 1;
+                int count = trim(slot, expired);
+                if (count == 0) {
+                    continue;
+                }
+                int base = slot * capRides;
+                int head = heads[slot];
+                out.writeLong(keys[i]);
+                out.writeShort(count);
+                for (int j = 0; j < count; ++j) {
+                    out.writeInt(times[base + (head + j) % capRides]);
+                }
+            }
+        }
+
+        /** Returns the slot of a rider, adding the rider if needed. */
+        private int slot(long rider, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (slots[i] != 0) {
+                if (keys[i] == rider) {
+                    return slots[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            if (size == heads.length) {
+                /* Makes room by dropping expired riders, growing only if that is not enough. */
+                compact((long) latest - retainSeconds);
+                return slot(rider, hash);
+            }
+            keys[i] = rider;
+            slots[i] = ++size;
+            return size - 1;
+        }
+
+        /**
+         * Drops the riders without rides after the expiry time and rebuilds
+         * the table and slot arrays with room for at least as many riders
+         * again, keeping the load factor at most 1/2.
+         */
+        void compact(long expired) {
+            int live = 0;
+            for (int i = 0; i < keys.length; ++i) {
+                if (slots[i] != 0 && trim(slots[i] - 1, expired) > 0) {
+                    ++live;
+                }
+            }
+            int capacity = INITIAL_TABLE_SIZE / 2;
+            while (capacity < 2 * live) {
+                capacity *= 2;
+            }
+            if (capacity > MAX_SLOTS || (long) capacity * capRides > MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("Too many active riders in shard");
+            }
+
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            short[] oldHeads = heads;
+            short[] oldCounts = counts;
+            int[] oldTimes = times;
+            keys = new long[capacity * 2];
+            slots = new int[capacity * 2];
+            heads = new short[capacity];
+            counts = new short[capacity];
+            times = new int[capacity * capRides];
+            size = 0;
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldSlots[i] == 0) {
+                    continue;
+                }
+                int old = oldSlots[i] - 1;
+                int count = oldCounts[old];
+                if (count == 0) {
+                    continue;
+                }
+                /* Copies the ring oldest ride first, so the new ring starts at 0. */
+                int oldBase = old * capRides;
+                int head = oldHeads[old];
+                int base = size * capRides;
+                for (int j = 0; j < count; ++j) {
+                    times[base + j] = oldTimes[oldBase + (head + j) % capRides];
+                }
+                counts[size] = (short) count;
+                int j = (int) hash(oldKeys[i]) & mask;
+                while (slots[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                slots[j] = ++size;
+            }
+        }
+
+        /** Drops the rides of a slot up to the expiry time and returns the number left. */
+        private int trim(int slot, long expired) {
+            int base = slot * capRides;
+            int head = heads[slot];
+            int count = counts[slot];
+            while (count > 0 && times[base + head] <= expired) {
+                head = head + 1 == capRides ? 0 : head + 1;
+                --count;
+            }
+            heads[slot] = (short) head;
+            counts[slot] = (short) count;
+            return count;
+        }
+    }
+}
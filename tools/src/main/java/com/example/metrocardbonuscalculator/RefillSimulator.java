@@ -0,0 +1,280 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Simulates a year of rides for many riders under a given refill strategy.
+ * <p>
+ * Each day, a rider makes a round trip with some probability and one more
+ * ride with another. Since refills only depend on the balance, the outcome of
+ * a year only depends on the number of rides taken in it. The outcome of
+ * every possible ride count is therefore computed once with the calculator,
+ * and simulating a rider-year comes down to drawing a ride count from its
+ * exact distribution and adding up table entries.
+ * <p>
+ * Riders are simulated in fixed-size blocks, each with its own generator
+ * seeded from a hash of the seed and the block index, which keeps results
+ * reproducible no matter how the blocks are scheduled across threads.
+ */
+public class RefillSimulator {
+    private static final int DAYS_PER_YEAR = 365;
+    private static final int MAX_RIDES_PER_DAY = 3;
+    private static final int RIDERS_PER_BLOCK = 4096;
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final MetroCardCalculator calc;
+    private final BigDecimal fare;
+    private final int fareCents;
+    private final double[] rideCdf;
+
+    /**
+     * Constructs a refill simulator.
+     *
+     * @param calc                 the calculator holding the bonus rules
+     * @param fare                 the cost of a fare in USD
+     * @param commuteProbability   the daily probability of a round trip
+     * @param extraRideProbability the daily probability of an extra ride
+     * @throws IllegalArgumentException if fare is not positive or not a
+     *                                  multiple of 0.01, or if a probability
+     *                                  is outside [0, 1]
+     * @throws NullPointerException     if calc or fare is null
+     */
+    public RefillSimulator(MetroCardCalculator calc,
+                           BigDecimal fare,
+                           double commuteProbability,
+                           double extraRideProbability) {
+
+        if (calc == null) {
+            throw new NullPointerException("Calculator must not be null");
+        }
+        if (fare.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Fare must be positive");
+        }
+        if (!(commuteProbability >= 0 && commuteProbability <= 1)
+                || !(extraRideProbability >= 0 && extraRideProbability <= 1)) {
+            throw new IllegalArgumentException("Probabilities must be between 0 and 1");
+        }
+        this.calc = calc;
+        this.fare = fare;
+        this.fareCents = toCents(fare);
+        this.rideCdf = rideCdf(commuteProbability, extraRideProbability);
+    }
+
+    /**
+     * Simulates a year for each rider, starting from an empty card.
+     *
+     * @param strategy the refill strategy
+     * @param riders   the number of riders
+     * @param seed     the seed from which all random numbers are derived
+     * @return the combined totals over all riders
+     * @throws IllegalArgumentException if riders is negative or if the
+     *                                  strategy does not always add value
+     *                                  when the balance is below one fare
+     * @throws NullPointerException     if strategy is null
+     */
+    public Result simulate(RefillStrategy strategy, long riders, long seed) {
+        return simulate(strategy, riders, seed, true);
+    }
+
+    /** Simulates the riders, processing the blocks in parallel if requested. */
+    Result simulate(RefillStrategy strategy, final long riders, final long seed, boolean parallel) {
+        if (riders < 0) {
+            throw new IllegalArgumentException("Number of riders must not be negative");
+        }
+        final Totals[] outcomes = outcomes(strategy);
+
+        long blocks = (riders + RIDERS_PER_BLOCK - 1) / RIDERS_PER_BLOCK;
+        LongStream stream = LongStream.range(0, blocks);
+        if (parallel) {
+            stream = stream.parallel();
+        }
+        Totals totals = stream.collect(Totals::new, (t, block) -> {
+            long start = block * RIDERS_PER_BLOCK;
+            int count = (int) Math.min(RIDERS_PER_BLOCK, riders - start);
+            SplittableRandom rnd = blockRandom(seed, block);
+            for (int i = 0; i < count; ++i) {
+                t.add(outcomes[sampleRides(rnd.nextDouble())]);
+            }
+        }, Totals::add);
+        return new Result(riders, totals);
+    }
+
+    /**
+     * Returns the generator of a block. Seeds which are a multiple of the
+     * generator's own step apart would give overlapping streams, so the seed
+     * and block index are hashed with the SplitMix64 finalizer first.
+     */
+    static SplittableRandom blockRandom(long seed, long block) {
+        long z = seed + (block + 1) * SEED_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    /** Returns the outcome of a year for every possible number of rides. */
+    Totals[] outcomes(RefillStrategy strategy) {
+        int threshold = toCents(strategy.getThreshold(fare));
+        Totals[] outcomes = new Totals[rideCdf.length];
+        Totals t = new Totals();
+        int balance = 0;
+        for (int rides = 0; rides < outcomes.length; ++rides) {
+            if (rides > 0) {
+                /* Refills continue until the balance covers the ride. */
+                if (balance < threshold || balance < fareCents) {
+                    do {
+                        BigDecimal payment = strategy.calculatePayment(calc, fare, BigDecimal.valueOf(balance, 2));
+                        int paymentCents = toCents(payment);
+                        int bonusCents = toCents(calc.calculateBonus(payment));
+                        if (paymentCents + bonusCents <= 0) {
+                            throw new IllegalArgumentException("Strategy must add value when refilling");
+                        }
+                        t.spend += paymentCents;
+                        t.bonus += bonusCents;
+                        balance += paymentCents + bonusCents;
+                        ++t.refills;
+                    } while (balance < fareCents);
+                }
+                balance -= fareCents;
+                ++t.rides;
+            }
+            Totals outcome = new Totals();
+            outcome.add(t);
+            outcome.balance = balance;
+            outcome.stranded = balance % fareCents;
+            outcomes[rides] = outcome;
+        }
+        return outcomes;
+    }
+
+    /** Returns the smallest number of rides whose cumulative probability exceeds u. */
+    private int sampleRides(double u) {
+        int lo = 0;
+        int hi = rideCdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rideCdf[mid] > u) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the cumulative distribution of the number of rides in a year. */
+    private static double[] rideCdf(double commuteProbability, double extraRideProbability) {
+        double[] daily = {
+                (1 - commuteProbability) * (1 - extraRideProbability),
+                (1 - commuteProbability) * extraRideProbability,
+                commuteProbability * (1 - extraRideProbability),
+                commuteProbability * extraRideProbability
+        };
+        double[] pmf = {1};
+        for (int day = 0; day < DAYS_PER_YEAR; ++day) {
+            double[] next = new double[pmf.length + MAX_RIDES_PER_DAY];
+            for (int i = 0; i < pmf.length; ++i) {
+                for (int j = 0; j < daily.length; ++j) {
+                    next[i + j] += pmf[i] * daily[j];
+                }
+            }
+            pmf = next;
+        }
+        double[] cdf = new double[pmf.length];
+        double sum = 0;
+        for (int i = 0; i < pmf.length; ++i) {
+            sum += pmf[i];
+            cdf[i] = sum;
+        }
+        cdf[cdf.length - 1] = Double.POSITIVE_INFINITY; // Absorbs rounding error.
+        return cdf;
+    }
+
+    private static int toCents(BigDecimal usd) {
+        try {
+            return usd.movePointRight(2).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must be a multiple of 0.01: " + usd.toPlainString());
+        }
+    }
+
+    /** Mutable totals over one or more rider-years, in cents. */
+    static final class Totals {
+        long spend;
+        long bonus;
+        long balance;
+        long stranded;
+        long refills;
+        long rides;
+
+        void add(Totals other) {
+            spend += other.spend;
+            bonus += other.bonus;
+            balance += other.balance;
+            stranded += other.stranded;
+            refills += other.refills;
+            rides += other.rides;
+        }
+    }
+
+    /**
+     * Totals of a simulation run. Amounts are in USD.
+     */
+    public static final class Result {
+        private final long riders;
+        private final Totals totals;
+
+        private Result(long riders, Totals totals) {
+            this.riders = riders;
+            this.totals = totals;
+        }
+
+        /** Returns the number of simulated rider-years. */
+        public long getRiders() {
+            return riders;
+        }
+
+        /** Returns the total number of rides taken. */
+        public long getRides() {
+            return totals.rides;
+        }
+
+        /** Returns the total number of refills. */
+        public long getRefills() {
+            return totals.refills;
+        }
+
+        /** Returns the total amount paid. */
+        public BigDecimal getSpend() {
+            return BigDecimal.valueOf(totals.spend, 2);
+        }
+
+        /** Returns the total bonus received. */
+        public BigDecimal getBonus() {
+            return BigDecimal.valueOf(totals.bonus, 2);
+        }
+
+        /** Returns the total balance left on the cards at the end of the year. */
+        public BigDecimal getBalance() {
+            return BigDecimal.valueOf(totals.balance, 2);
+        }
+
+        /**
+         * Returns the total balance left at the end of the year which does not
+         * cover a fare.
+         */
+        public BigDecimal getStranded() {
+            return BigDecimal.valueOf(totals.stranded, 2);
+        }
+
+        /** Returns the given total divided by the number of riders. */
+        public BigDecimal perRider(BigDecimal total) {
+            if (riders == 0) {
+                return BigDecimal.ZERO.setScale(2);
+            }
+            return total.divide(BigDecimal.valueOf(riders), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+
+/**
+ * Compares refill strategies from the command line.
+ * <p>
+ * Usage: {@code RefillSimulatorRunner [riders] [seed]}
+ * <p>
+ * The fare and bonus values match the app defaults in data.xml.
+ */
+public final class RefillSimulatorRunner {
+    private static final BigDecimal FARE = new BigDecimal("2.75");
+    private static final BigDecimal BONUS_PCT = new BigDecimal("5");
+    private static final BigDecimal BONUS_MIN = new BigDecimal("5.50");
+    private static final BigDecimal INCREMENT = new BigDecimal("0.05");
+
+    private static final double COMMUTE_PROBABILITY = 0.7;
+    private static final double EXTRA_RIDE_PROBABILITY = 0.2;
+
+    private RefillSimulatorRunner() {
+    }
+
+    public static void main(String[] args) {
+        long riders = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        MetroCardCalculator calc = new MetroCardCalculator(BONUS_MIN, BONUS_PCT, INCREMENT);
+        RefillSimulator sim = new RefillSimulator(calc, FARE, COMMUTE_PROBABILITY, EXTRA_RIDE_PROBABILITY);
+
+        RefillStrategy[] strategies = {
+                RefillStrategy.rides(1),
+                RefillStrategy.rides(2),
+                RefillStrategy.rides(10),
+                RefillStrategy.exactBalance(2),
+                RefillStrategy.exactBalance(10),
+                RefillStrategy.fixedAmount(new BigDecimal("20.00"), 2),
+                RefillStrategy.fixedAmount(new BigDecimal("40.00"), 2)
+        };
+
+        System.out.println(riders + " rider-years, seed " + seed + ", per rider:");
+        System.out.println(String.format("%-40s %10s %10s %10s %8s %8s",
+                "Strategy", "Spend", "Bonus", "Stranded", "Refills", "Secs"));
+        for (RefillStrategy strategy : strategies) {
+            long start = System.nanoTime();
+            RefillSimulator.Result result = sim.simulate(strategy, riders, seed);
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%-40s %10s %10s %10s %8.1f %8.2f",
+                    strategy,
+                    result.perRider(result.getSpend()).toPlainString(),
+                    result.perRider(result.getBonus()).toPlainString(),
+                    result.perRider(result.getStranded()).toPlainString(),
+                    riders == 0 ? 0.0 : (double) result.getRefills() / riders,
+                    secs));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.metrocardbonuscalculator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Decides when a card is refilled and by how much.
+ */
+public abstract class RefillStrategy {
+    /** Upper bound on the extra rides tried when looking for an exact balance. */
+    private static final int MAX_EXTRA_RIDES = 40;
+
+    /**
+     * Returns the balance in USD below which the card is refilled.
+     *
+     * @param fare the cost of a fare in USD
+     */
+    public abstract BigDecimal getThreshold(BigDecimal fare);
+
+    /**
+     * Computes the payment made when the card is refilled.
+     *
+     * @param calc    the calculator holding the bonus rules
+     * @param fare    the cost of a fare in USD
+     * @param balance the current balance in USD, always below the threshold
+     * @return the payment amount in USD
+     */
+    public abstract BigDecimal calculatePayment(MetroCardCalculator calc, BigDecimal fare, BigDecimal balance);
+
+    /**
+     * Returns a strategy which buys a fixed number of rides whenever the
+     * balance no longer covers a fare.
+     *
+     * @param rides the number of rides to buy
+     * @throws IllegalArgumentException if rides is not positive
+     */
+    public static RefillStrategy rides(final int rides) {
+        if (rides <= 0) {
+            throw new IllegalArgumentException("Number of rides must be positive");
+        }
+        final BigInteger count = BigInteger.valueOf(rides);
+        return new RefillStrategy() {
+            @Override
+            public BigDecimal getThreshold(BigDecimal fare) {
+                return fare;
+            }
+
+            @Override
+            public BigDecimal calculatePayment(MetroCardCalculator calc, BigDecimal fare, BigDecimal balance) {
+                return calc.calculatePayment(fare, balance, count);
+            }
+
+            @Override
+            public String toString() {
+                return "Buy " + rides + (rides == 1 ? " ride" : " rides");
+            }
+        };
+    }
+
+    /**
+     * Returns a strategy which buys at least a given number of rides, adding
+     * rides until the new balance is an exact multiple of the fare. If no
+     * such amount is found, the minimum number of rides is bought.
+     *
+     * @param minRides the minimum number of rides to buy
+     * @throws IllegalArgumentException if minRides is not positive
+     */
+    public static RefillStrategy exactBalance(final int minRides) {
+        if (minRides <= 0) {
+            throw new IllegalArgumentException("Number of rides must be positive");
+        }
+        return new RefillStrategy() {
+            @Override
+            public BigDecimal getThreshold(BigDecimal fare) {
+                return fare;
+            }
+
+            @Override
+            public BigDecimal calculatePayment(MetroCardCalculator calc, BigDecimal fare, BigDecimal balance) {
+                for (int rides = minRides; rides <= minRides + MAX_EXTRA_RIDES; ++rides) {
+                    BigDecimal payment = calc.calculatePayment(fare, balance, BigInteger.valueOf(rides));
+                    BigDecimal newBalance = balance.add(payment).add(calc.calculateBonus(payment));
+                    if (newBalance.remainder(fare).compareTo(BigDecimal.ZERO) == 0) {
+                        return payment;
+                    }
+                }
+                return calc.calculatePayment(fare, balance, BigInteger.valueOf(minRides));
+            }
+
+            @Override
+            public String toString() {
+                return "Top up to zero leftover (" + minRides + "+ rides)";
+            }
+        };
+    }
+
+    /**
+     * Returns a strategy which pays a fixed amount whenever the balance drops
+     * below a given number of fares.
+     *
+     * @param amount the payment amount in USD
+     * @param fares  the number of fares the balance must cover
+     * @throws IllegalArgumentException if amount or fares is not positive
+     * @throws NullPointerException     if amount is null
+     */
+    public static RefillStrategy fixedAmount(final BigDecimal amount, final int fares) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (fares <= 0) {
+            throw new IllegalArgumentException("Number of fares must be positive");
+        }
+        return new RefillStrategy() {
+            @Override
+            public BigDecimal getThreshold(BigDecimal fare) {
+                return fare.multiply(BigDecimal.valueOf(fares));
+            }
+
+            @Override
+            public BigDecimal calculatePayment(MetroCardCalculator calc, BigDecimal fare, BigDecimal balance) {
+                return amount;
+            }
+
+            @Override
+            public String toString() {
+                return "Pay $" + amount.toPlainString() + " below " + fares + " fares";
+            }
+        };
+    }
+}
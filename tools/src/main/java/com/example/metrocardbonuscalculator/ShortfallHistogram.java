@@ -0,0 +1,143 @@
+package com.example.metrocardbonuscalculator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts refill requests by shortfall, the amount in cents the balance is
+ * short of the requested rides ({@code fare * rides - balance}). The payment
+ * calculated for a request only depends on its shortfall, so the histogram
+ * holds everything needed to evaluate a bonus policy.
+ * <p>
+ * Small shortfalls are counted in an array indexed by cents and the rare
+ * large ones in a map. A histogram is not safe for use by multiple threads;
+ * build one per thread and {@link #merge} them instead.
+ */
+public class ShortfallHistogram {
+    /** The largest shortfall supported, in cents. */
+    public static final long MAX_SHORTFALL = 100000000000L;
+
+    private static final int DENSE_LIMIT = 1 << 20;
+
+    private long[] dense = new long[1024];
+    private final Map<Long, Long> sparse = new HashMap<>();
+    private long covered;
+    private long total;
+
+    /**
+     * Adds a refill request.
+     *
+     * @param fare    the cost of a fare in cents
+     * @param balance the current balance in cents
+     * @param rides   the desired number of rides
+     * @throws IllegalArgumentException if an argument is negative or if the
+     *                                  shortfall is above {@link #MAX_SHORTFALL}
+     */
+    public void add(long fare, long balance, long rides) {
+        if (fare < 0 || balance < 0 || rides < 0) {
+            throw new IllegalArgumentException("Arguments must not be negative");
+        }
+        long target;
+        try {
+            target = Math.multiplyExact(fare, rides);
+        } catch (ArithmeticException e) {
+            /* No balance covers a target beyond a long. */
+            throw new IllegalArgumentException("Shortfall is out of range");
+        }
+        addShortfall(target - balance, 1);
+    }
+
+    /**
+     * Adds requests with a given shortfall.
+     *
+     * @param shortfall the shortfall in cents, which is not positive if the
+     *                  balance already covers the rides
+     * @param count     the number of requests
+     * @throws IllegalArgumentException if count is negative or if the
+     *                                  shortfall is above {@link #MAX_SHORTFALL}
+     */
+    public void addShortfall(long shortfall, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        if (shortfall > MAX_SHORTFALL) {
+            throw new IllegalArgumentException("Shortfall is out of range");
+        }
+        total += count;
+        if (shortfall <= 0) {
+            covered += count;
+        } else if (shortfall < DENSE_LIMIT) {
+            if (shortfall >= dense.length) {
+                int length = dense.length;
+                while (shortfall >= length) {
+                    length *= 2;
+                }
+                dense = Arrays.copyOf(dense, length);
+            }
+            dense[(int) shortfall] += count;
+        } else {
+            Long old = sparse.get(shortfall);
+            sparse.put(shortfall, old == null ? count : old + count);
+        }
+    }
+
+    /**
+     * Adds the requests of another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void merge(ShortfallHistogram other) {
+        for (int i = 1; i < other.dense.length; ++i) {
+            if (other.dense[i] != 0) {
+                addShortfall(i, other.dense[i]);
+            }
+        }
+        for (Map.Entry<Long, Long> entry : other.sparse.entrySet()) {
+            addShortfall(entry.getKey(), entry.getValue());
+        }
+        total += other.covered;
+        covered += other.covered;
+    }
+
+    /** Returns the number of requests. */
+    public long getCount() {
+        return total;
+    }
+
+    /** Returns the number of requests whose balance already covers the rides. */
+    public long getCoveredCount() {
+        return covered;
+    }
+
+    /**
+     * Returns the distinct positive shortfalls in ascending order in the first
+     * row and their counts in the second.
+     */
+    long[][] toArrays() {
+        int n = sparse.size();
+        for (int i = 1; i < dense.length; ++i) {
+            if (dense[i] != 0) {
+                ++n;
+            }
+        }
+        long[] shortfalls = new long[n];
+        long[] counts = new long[n];
+        int j = 0;
+        for (int i = 1; i < dense.length; ++i) {
+            if (dense[i] != 0) {
+                shortfalls[j] = i;
+                counts[j++] = dense[i];
+            }
+        }
+        int firstSparse = j;
+        for (Long shortfall : sparse.keySet()) {
+            shortfalls[j++] = shortfall;
+        }
+        Arrays.sort(shortfalls, firstSparse, n);
+        for (int i = firstSparse; i < n; ++i) {
+            counts[i] = sparse.get(shortfalls[i]);
+        }
+        return new long[][]{shortfalls, counts};
+    }
+}
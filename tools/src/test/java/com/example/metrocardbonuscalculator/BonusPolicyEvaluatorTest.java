@@ -0,0 +1,109 @@
+package com.example.metrocardbonuscalculator;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BonusPolicyEvaluatorTest {
+    private static final BigDecimal[] PCTS = {usd("0"), usd("5"), usd("7.5"), usd("33.3333")};
+    private static final BigDecimal[] MINS = {usd("0"), usd("0.01"), usd("5.50"), usd("20.00")};
+    private static final BigDecimal[] INCREMENTS = {usd("0.01"), usd("0.05"), usd("0.25"), usd("7.00")};
+
+    private static BigDecimal usd(String s) {
+        return new BigDecimal(s);
+    }
+
+    @Test
+    public void evaluate_matchesCalculator() {
+        Random rnd = new Random(1);
+        int n = 5000;
+        long[] fares = new long[n];
+        long[] balances = new long[n];
+        long[] rides = new long[n];
+        ShortfallHistogram histogram = new ShortfallHistogram();
+        for (int i = 0; i < n; ++i) {
+            fares[i] = 100 + rnd.nextInt(600);
+            balances[i] = rnd.nextInt(3000);
+            rides[i] = rnd.nextInt(i % 100 == 0 ? 5000 : 40);
+            histogram.add(fares[i], balances[i], rides[i]);
+        }
+
+        BonusPolicyEvaluator.Result[] results =
+                new BonusPolicyEvaluator(histogram).evaluate(PCTS, MINS, INCREMENTS);
+        assertEquals(PCTS.length * MINS.length * INCREMENTS.length, results.length);
+
+        for (BonusPolicyEvaluator.Result result : results) {
+            MetroCardCalculator calc = new MetroCardCalculator(result.getBonusMin(),
+                    result.getBonusPct(), result.getIncrement());
+            BigDecimal revenue = BigDecimal.ZERO;
+            BigDecimal bonus = BigDecimal.ZERO;
+            for (int i = 0; i < n; ++i) {
+                BigDecimal payment = calc.calculatePayment(BigDecimal.valueOf(fares[i], 2),
+                        BigDecimal.valueOf(balances[i], 2), BigInteger.valueOf(rides[i]));
+                revenue = revenue.add(payment);
+                bonus = bonus.add(calc.calculateBonus(payment));
+            }
+            assertEquals(n, result.getRequests());
+            assertEquals(0, revenue.compareTo(result.getRevenue()));
+            assertEquals(0, bonus.compareTo(result.getBonus()));
+        }
+    }
+
+    @Test
+    public void evaluate_ordersResultsByPctThenMinThenIncrement() {
+        ShortfallHistogram histogram = new ShortfallHistogram();
+        histogram.addShortfall(550, 1);
+        BonusPolicyEvaluator.Result[] results =
+                new BonusPolicyEvaluator(histogram).evaluate(PCTS, MINS, INCREMENTS);
+        BonusPolicyEvaluator.Result result = results[(2 * MINS.length + 1) * INCREMENTS.length + 3];
+        assertEquals(PCTS[2], result.getBonusPct());
+        assertEquals(MINS[1], result.getBonusMin());
+        assertEquals(INCREMENTS[3], result.getIncrement());
+    }
+
+    @Test
+    public void merge_combinesCounts() {
+        ShortfallHistogram a = new ShortfallHistogram();
+        a.add(275, 0, 2);
+        a.add(275, 1000, 2);
+        ShortfallHistogram b = new ShortfallHistogram();
+        b.addShortfall(550, 3);
+        b.addShortfall(ShortfallHistogram.MAX_SHORTFALL, 1);
+        a.merge(b);
+        assertEquals(6, a.getCount());
+        assertEquals(1, a.getCoveredCount());
+        assertEquals(2, new BonusPolicyEvaluator(a).getDistinctShortfalls());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evaluate_rejectsFractionalCents() {
+        new BonusPolicyEvaluator(new ShortfallHistogram()).evaluate(usd("5"), usd("5.505"), usd("0.05"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void evaluate_rejectsTotalsBeyondLong() {
+        ShortfallHistogram histogram = new ShortfallHistogram();
+        histogram.addShortfall(ShortfallHistogram.MAX_SHORTFALL, 50000000);
+        histogram.addShortfall(ShortfallHistogram.MAX_SHORTFALL - 1, 50000000);
+        new BonusPolicyEvaluator(histogram).evaluate(usd("5"), usd("5.50"), usd("0.05"));
+    }
+
+    @Test
+    public void histogram_countsCoveredRequestsWithLargeBalance() {
+        ShortfallHistogram histogram = new ShortfallHistogram();
+        histogram.add(275, Long.MAX_VALUE, 10);
+        histogram.add(Long.MAX_VALUE, Long.MAX_VALUE, 1);
+        assertEquals(2, histogram.getCount());
+        assertEquals(2, histogram.getCoveredCount());
+        try {
+            histogram.add(Long.MAX_VALUE, Long.MAX_VALUE, 2);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(2, histogram.getCount());
+        }
+    }
+}
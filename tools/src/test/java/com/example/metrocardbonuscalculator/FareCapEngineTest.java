@@ -0,0 +1,169 @@
+package com.example.metrocardbonuscalculator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FareCapEngineTest {
+    private static final BigDecimal[] FARES = {new BigDecimal("2.75"), new BigDecimal("6.50")};
+    private static final long HOUR = 3600 * 1000L;
+    private static final long WEEK = 7 * 24 * HOUR;
+    private static final long T0 = FareCapEngine.MIN_TIME_MILLIS + WEEK;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void charge_capsAfterPaidRidesInWindow() {
+        FareCapEngine engine = new FareCapEngine(FARES, 3, WEEK, 1);
+        assertEquals(275, engine.charge(1, T0, 0));
+        assertEquals(650, engine.charge(1, T0 + HOUR, 1));
+        assertEquals(275, engine.charge(1, T0 + 2 * HOUR, 0));
+        assertEquals(0, engine.charge(1, T0 + 3 * HOUR, 0));
+        assertEquals(275, engine.charge(2, T0 + 3 * HOUR, 0));
+        assertEquals(0, engine.charge(1, T0 + WEEK - 1000, 0));
+        assertEquals(275, engine.charge(1, T0 + WEEK, 0));
+        assertEquals(0, engine.charge(1, T0 + WEEK + 1000, 0));
+    }
+
+    @Test
+    public void process_matchesSequentialCharges() throws Exception {
+        int n = 200000;
+        long[] riders = new long[n];
+        long[] times = new long[n];
+        int[] fareTypes = new int[n];
+        Random rnd = new Random(1);
+        for (int i = 0; i < n; ++i) {
+            riders[i] = rnd.nextInt(5000);
+            times[i] = T0 + i * 60000L;
+            fareTypes[i] = rnd.nextInt(FARES.length);
+        }
+
+        FareCapEngine single = new FareCapEngine(FARES, 12, WEEK, 1);
+        long[] expected = new long[n];
+        long expectedTotal = 0;
+        for (int i = 0; i < n; ++i) {
+            expected[i] = single.charge(riders[i], times[i], fareTypes[i]);
+            expectedTotal += expected[i];
+        }
+
+        FareCapEngine sharded = new FareCapEngine(FARES, 12, WEEK, 4);
+        int[] charges = new int[n];
+        assertEquals(expectedTotal, sharded.process(riders, times, fareTypes, n, charges));
+        for (int i = 0; i < n; ++i) {
+            assertEquals(expected[i], charges[i]);
+        }
+
+        /* After a checkpoint only the riders with a paid ride in the last window plus skew are kept. */
+        boolean[] active = new boolean[5000];
+        int activeCount = 0;
+        for (int i = 0; i < n; ++i) {
+            if (expected[i] > 0 && times[i] > times[n - 1] - 2 * WEEK && !active[(int) riders[i]]) {
+                active[(int) riders[i]] = true;
+                ++activeCount;
+            }
+        }
+        sharded.checkpoint(new File(folder.getRoot(), "caps.bin"));
+        assertEquals(activeCount, sharded.getRiderCount());
+    }
+
+    @Test
+    public void charge_reclaimsExpiredRiders() throws Exception {
+        FareCapEngine engine = new FareCapEngine(FARES, 2, HOUR, 0, 1);
+        for (int rider = 0; rider < 100000; ++rider) {
+            assertEquals(275, engine.charge(rider, T0 + rider * 1000L, 0));
+            assertTrue(engine.getRiderCount() <= 8192);
+        }
+        engine.checkpoint(new File(folder.getRoot(), "caps.bin"));
+        assertEquals(3600, engine.getRiderCount());
+        assertEquals(275, engine.charge(99999, T0 + 99999 * 1000L, 0));
+        assertEquals(0, engine.charge(99999, T0 + 99999 * 1000L, 0));
+    }
+
+    @Test
+    public void process_rejectsBatchWithUnknownFareType() {
+        FareCapEngine engine = new FareCapEngine(FARES, 3, WEEK, 2);
+        try {
+            engine.process(new long[]{1, 2}, new long[]{T0, T0}, new int[]{0, 5}, 2, new int[2]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, engine.getRiderCount());
+        }
+    }
+
+    @Test
+    public void checkpoint_keepsRidersWithinSkew() throws Exception {
+        File file = new File(folder.getRoot(), "caps.bin");
+        FareCapEngine engine = new FareCapEngine(FARES, 1, HOUR, 4);
+        assertEquals(275, engine.charge(1, T0, 0));
+        assertEquals(275, engine.charge(2, T0 + HOUR + HOUR / 2, 0));
+        engine.checkpoint(file);
+        assertEquals(0, engine.charge(1, T0 + HOUR - 1000, 0));
+
+        /* Without skew the same stream breaks the contract, and rider 1 is forgotten. */
+        FareCapEngine strict = new FareCapEngine(FARES, 1, HOUR, 0, 4);
+        strict.charge(1, T0, 0);
+        strict.charge(2, T0 + HOUR + HOUR / 2, 0);
+        strict.checkpoint(file);
+        assertEquals(1, strict.getRiderCount());
+    }
+
+    @Test
+    public void restore_continuesFromCheckpoint() throws Exception {
+        FareCapEngine engine = new FareCapEngine(FARES, 2, WEEK, 0, 3);
+        for (long rider = 0; rider < 1000; ++rider) {
+            engine.charge(rider, T0, 0);
+            if (rider % 2 == 0) {
+                engine.charge(rider, T0 + HOUR, 0);
+            }
+        }
+        engine.charge(5000, T0 + HOUR - WEEK, 0); // Expired by the checkpoint.
+        File file = new File(folder.getRoot(), "caps.bin");
+        engine.checkpoint(file);
+
+        FareCapEngine restored = new FareCapEngine(FARES, 2, WEEK, 5);
+        restored.restore(file);
+        assertEquals(1000, restored.getRiderCount());
+        for (long rider = 0; rider < 1000; ++rider) {
+            assertEquals(rider % 2 == 0 ? 0 : 275, restored.charge(rider, T0 + 2 * HOUR, 0));
+        }
+    }
+
+    @Test
+    public void restore_keepsStateOnTruncatedCheckpoint() throws Exception {
+        FareCapEngine engine = new FareCapEngine(FARES, 2, WEEK, 2);
+        for (long rider = 0; rider < 500; ++rider) {
+            engine.charge(rider, T0, 0);
+        }
+        File file = new File(folder.getRoot(), "caps.bin");
+        engine.checkpoint(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+
+        try {
+            engine.restore(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(500, engine.getRiderCount());
+        assertEquals(275, engine.charge(499, T0 + HOUR, 0));
+        assertEquals(0, engine.charge(499, T0 + 2 * HOUR, 0));
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void restore_rejectsDifferentCap() throws Exception {
+        File file = new File(folder.getRoot(), "caps.bin");
+        new FareCapEngine(FARES, 2, WEEK, 1).checkpoint(file);
+        new FareCapEngine(FARES, 3, WEEK, 1).restore(file);
+    }
+}
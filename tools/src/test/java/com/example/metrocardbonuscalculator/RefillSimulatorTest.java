@@ -0,0 +1,104 @@
+package com.example.metrocardbonuscalculator;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class RefillSimulatorTest {
+    private static final BigDecimal FARE = usd("2.75");
+
+    private static BigDecimal usd(String s) {
+        return new BigDecimal(s);
+    }
+
+    private static RefillSimulator simulator() {
+        MetroCardCalculator calc = new MetroCardCalculator(usd("5.50"), usd("5"), usd("0.05"));
+        return new RefillSimulator(calc, FARE, 0.7, 0.2);
+    }
+
+    private static void assertSameResult(RefillSimulator.Result expected, RefillSimulator.Result actual) {
+        assertEquals(expected.getRiders(), actual.getRiders());
+        assertEquals(expected.getRides(), actual.getRides());
+        assertEquals(expected.getRefills(), actual.getRefills());
+        assertEquals(expected.getSpend(), actual.getSpend());
+        assertEquals(expected.getBonus(), actual.getBonus());
+        assertEquals(expected.getBalance(), actual.getBalance());
+        assertEquals(expected.getStranded(), actual.getStranded());
+    }
+
+    @Test
+    public void simulate_sameSeedGivesSameResultSequentialAndParallel() {
+        RefillSimulator sim = simulator();
+        RefillStrategy strategy = RefillStrategy.rides(10);
+        long riders = 100000;
+        RefillSimulator.Result sequential = sim.simulate(strategy, riders, 42, false);
+        assertSameResult(sequential, sim.simulate(strategy, riders, 42, true));
+        assertSameResult(sequential, sim.simulate(strategy, riders, 42));
+        assertNotEquals(sequential.getRides(), sim.simulate(strategy, riders, 43).getRides());
+    }
+
+    @Test
+    public void blockRandom_blocksDoNotRepeatDraws() {
+        int draws = 4096;
+        Set<Long> seen = new HashSet<>();
+        for (long block = 0; block < 4; ++block) {
+            SplittableRandom rnd = RefillSimulator.blockRandom(42, block);
+            for (int i = 0; i < draws; ++i) {
+                assertTrue("Block " + block + " repeats a draw", seen.add(rnd.nextLong()));
+            }
+        }
+    }
+
+    @Test
+    public void outcomes_matchHandTraceOfRides() {
+        RefillSimulator.Totals[] outcomes = simulator().outcomes(RefillStrategy.rides(2));
+
+        /* Buys 2 rides for 5.50 plus a 0.28 bonus, then rides once. */
+        RefillSimulator.Totals one = outcomes[1];
+        assertEquals(550, one.spend);
+        assertEquals(28, one.bonus);
+        assertEquals(1, one.refills);
+        assertEquals(1, one.rides);
+        assertEquals(303, one.balance);
+        assertEquals(28, one.stranded);
+
+        /* The second ride is covered by the balance. */
+        RefillSimulator.Totals two = outcomes[2];
+        assertEquals(550, two.spend);
+        assertEquals(1, two.refills);
+        assertEquals(28, two.balance);
+
+        /* 5.22 is owed, which earns no bonus and is rounded up to 5.25. */
+        RefillSimulator.Totals three = outcomes[3];
+        assertEquals(1075, three.spend);
+        assertEquals(28, three.bonus);
+        assertEquals(2, three.refills);
+        assertEquals(3, three.rides);
+        assertEquals(278, three.balance);
+        assertEquals(3, three.stranded);
+
+        assertEquals(3, outcomes[4].balance);
+        assertEquals(0, outcomes[0].spend);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void simulate_rejectsStrategyWhichAddsNoValue() {
+        RefillStrategy strategy = new RefillStrategy() {
+            @Override
+            public BigDecimal getThreshold(BigDecimal fare) {
+                return fare;
+            }
+
+            @Override
+            public BigDecimal calculatePayment(MetroCardCalculator calc, BigDecimal fare, BigDecimal balance) {
+                return BigDecimal.ZERO;
+            }
+        };
+        simulator().simulate(strategy, 10, 1);
+    }
+}